@@ -0,0 +1,89 @@
+package com.example.tfliteandroidapp;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.tfliteandroidapp.core.ImagePreprocessor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.support.common.ops.NormalizeOp;
+import org.tensorflow.lite.support.image.ImageProcessor;
+import org.tensorflow.lite.support.image.TensorImage;
+import org.tensorflow.lite.support.image.ops.ResizeOp;
+import org.tensorflow.lite.support.image.ops.ResizeWithCropOrPadOp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares fused preprocessing with the ImageProcessor chain of TensorFlow Lite Support which it replaced,
+ * ResizeWithCropOrPadOp, nearest neighbor ResizeOp and NormalizeOp. Bitmap operations of the chain
+ * need Android, so the comparison runs on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImagePreprocessorParityTest {
+
+    private static int[] randomImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++)
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        return pixels;
+    }
+
+    private static ByteBuffer processChain(int[] pixels, int width, int height, int targetHeight, int targetWidth,
+                                           DataType type, float mean, float std) {
+        int cropSize = Math.min(width, height);
+        ImageProcessor processor = new ImageProcessor.Builder()
+                .add(new ResizeWithCropOrPadOp(cropSize, cropSize))
+                .add(new ResizeOp(targetHeight, targetWidth, ResizeOp.ResizeMethod.NEAREST_NEIGHBOR))
+                .add(new NormalizeOp(mean, std))
+                .build();
+        TensorImage image = new TensorImage(type);
+
+        image.load(Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888));
+        ByteBuffer output = processor.process(image).getBuffer();
+        output.order(ByteOrder.nativeOrder()).rewind();
+        return output;
+    }
+
+    private static ByteBuffer processFused(int[] pixels, int width, int height, int targetHeight, int targetWidth,
+                                           ImagePreprocessor.OutputType type, float mean, float std) {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(width, height, targetHeight, targetWidth,
+                type, mean, std, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+        ByteBuffer output = ByteBuffer.allocateDirect(preprocessor.getOutputSize()).order(ByteOrder.nativeOrder());
+        preprocessor.process(pixels, output);
+        output.rewind();
+        return output;
+    }
+
+    @Test
+    public void floatOutput_matchesImageProcessorChain() {
+        int[][] sizes = {{640, 480}, {375, 500}, {224, 224}, {101, 77}};
+        for (int[] size : sizes) {
+            int[] pixels = randomImage(size[0], size[1], size[0]);
+            ByteBuffer expected = processChain(pixels, size[0], size[1], 224, 224, DataType.FLOAT32, 127.5f, 127.5f);
+            ByteBuffer actual = processFused(pixels, size[0], size[1], 224, 224,
+                    ImagePreprocessor.OutputType.FLOAT32, 127.5f, 127.5f);
+
+            assertEquals(expected.remaining(), actual.remaining());
+            for (int i = 0; expected.hasRemaining(); i++)
+                assertEquals(size[0] + "x" + size[1] + " value " + i, expected.getFloat(), actual.getFloat(), 1e-6f);
+        }
+    }
+
+    @Test
+    public void uint8Output_matchesImageProcessorChain() {
+        int[] pixels = randomImage(500, 333, 7);
+        ByteBuffer expected = processChain(pixels, 500, 333, 128, 128, DataType.UINT8, 0.0f, 1.0f);
+        ByteBuffer actual = processFused(pixels, 500, 333, 128, 128, ImagePreprocessor.OutputType.UINT8, 0.0f, 1.0f);
+
+        assertEquals(expected, actual);
+    }
+}
@@ -3,6 +3,8 @@ package com.example.tfliteandroidapp;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.AdapterView;
@@ -10,11 +12,13 @@ import android.widget.Button;
 import android.widget.Spinner;
 import android.widget.TextView;
 
+import com.example.tfliteandroidapp.core.BenchmarkPlan;
+import com.example.tfliteandroidapp.core.Device;
+import com.example.tfliteandroidapp.core.LogRing;
 import com.example.tfliteandroidapp.test.TFLiteAndroidTest;
-import com.example.tfliteandroidapp.test.TFLiteAndroidTest.Device;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MainActivity extends AppCompatActivity implements AdapterView.OnItemSelectedListener {
 
@@ -24,8 +28,16 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
     private Spinner batchSizeSpinner;
     private Button startButton;
     private Thread tfLiteThread;
-    private final int MAX_LOGS = 10;
-    private ArrayList<String> logs;
+    private static final int MAX_LOGS = 10;
+    /**
+     * Logs are rendered at most once per this interval
+     */
+    private static final long LOG_REFRESH_MS = 250;
+    private final LogRing logs = new LogRing(MAX_LOGS);
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final Runnable refreshLogs = this::refreshLogs;
+    private TextView logView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -41,28 +53,50 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         batchSizeSpinner = findViewById(R.id.batchSizeSpinner);
         batchSizeSpinner.setOnItemSelectedListener(this);
         startButton= findViewById(R.id.button);
-        logs = new ArrayList<String>();
+        logView = findViewById(R.id.logs);
+        loadPlan();
+    }
+
+    /**
+     * Reads benchmark plan passed with "plan" (JSON) or "planAsset" (path inside assets) extra,
+     * e.g. adb shell am start -n com.example.tfliteandroidapp/.MainActivity --es planAsset plans/quick.json
+     */
+    private void loadPlan()
+    {
+        String json = getIntent().getStringExtra("plan");
+        String asset = getIntent().getStringExtra("planAsset");
+
+        if (json != null) {
+            tfLiteAndroidTest.setPlan(BenchmarkPlan.fromJson(json));
+        } else if (asset != null) {
+            try {
+                tfLiteAndroidTest.loadPlan(asset);
+            } catch (IOException e) {
+                e.printStackTrace();
+                updateLogs("Could not load plan " + asset);
+            }
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        tfLiteAndroidTest.shutdown();
         getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
     }
 
     public void onItemSelected(AdapterView<?> parent, View view, int pos, long id)
     {
+        String item = parent.getItemAtPosition(pos).toString();
+        boolean all = item.equals(getString(R.string.all));
+
         if (parent == deviceSpinner) {
-            Device device = Device.valueOf(parent.getItemAtPosition(pos).toString());
-//            tfLiteAndroidTest.setDevice(device);
+            tfLiteAndroidTest.setDevice(all ? null : Device.valueOf(item));
         } else if (parent == versionSpinner) {
-            String version = parent.getItemAtPosition(pos).toString();
-//            tfLiteAndroidTest.setVersion(version);
+            tfLiteAndroidTest.setVersion(all ? null : item);
         } else if (parent == batchSizeSpinner) {
-            String batchSize = parent.getItemAtPosition(pos).toString();
-//            tfLiteAndroidTest.setBatchSize(Integer.parseInt(batchSize));
+            tfLiteAndroidTest.setBatchSize(all ? 0 : Integer.parseInt(item));
         }
-
     }
 
     @Override
@@ -89,16 +123,38 @@ public class MainActivity extends AppCompatActivity implements AdapterView.OnIte
         batchSizeSpinner.setEnabled(true);
     }
 
+    /**
+     * Appends message to the log, safe to call from any thread. Log view is refreshed later on the UI thread.
+     */
     public void updateLogs(String log)
     {
-        int size;
-        TextView logView = findViewById(R.id.logs);
-        logView.setText("");
-
         logs.add(log);
-        size = logs.size();
-        List<String> subList = logs.subList(size-Math.min(size,MAX_LOGS), size);
-        for (String el : subList)
-            logView.setText(el + "\n" + logView.getText());
+        scheduleRefresh();
+    }
+
+    /**
+     * Stops refreshing the log view while inferences are timed, messages are shown after the section.
+     */
+    public void setTimedSection(boolean timing)
+    {
+        logs.setTimedSection(timing);
+        if (!timing)
+            scheduleRefresh();
+    }
+
+    private void scheduleRefresh()
+    {
+        if (refreshScheduled.compareAndSet(false, true))
+            handler.postDelayed(refreshLogs, LOG_REFRESH_MS);
+    }
+
+    private void refreshLogs()
+    {
+        refreshScheduled.set(false);
+        if (logs.isTimedSection())
+            return;
+        String text = logs.render(MAX_LOGS);
+        if (text != null)
+            logView.setText(text);
     }
 }
\ No newline at end of file
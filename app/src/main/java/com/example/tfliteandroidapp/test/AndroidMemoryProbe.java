@@ -0,0 +1,18 @@
+package com.example.tfliteandroidapp.test;
+
+import android.os.Debug;
+
+import com.example.tfliteandroidapp.core.MemoryProbe;
+
+/**
+ * Reads native heap allocated by the process from Debug
+ */
+public class AndroidMemoryProbe implements MemoryProbe {
+
+    public static final AndroidMemoryProbe INSTANCE = new AndroidMemoryProbe();
+
+    @Override
+    public long nativeHeapUsed() {
+        return Debug.getNativeHeapAllocatedSize();
+    }
+}
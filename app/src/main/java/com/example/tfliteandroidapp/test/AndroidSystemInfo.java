@@ -0,0 +1,24 @@
+package com.example.tfliteandroidapp.test;
+
+import android.os.Build;
+
+import com.example.tfliteandroidapp.core.SystemInfo;
+
+/**
+ * Fills system info of results from Build
+ */
+public final class AndroidSystemInfo {
+
+    private AndroidSystemInfo() {
+    }
+
+    public static SystemInfo create() {
+        SystemInfo info = new SystemInfo();
+        info.manufacturer = Build.MANUFACTURER;
+        info.model = Build.MODEL;
+        info.hardware = Build.HARDWARE;
+        info.board = Build.BOARD;
+        info.apiLevel = Build.VERSION.SDK_INT;
+        return info;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.tfliteandroidapp.test;
+
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.example.tfliteandroidapp.core.ImageSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Images of a directory inside assets of the application decoded with BitmapFactory
+ */
+public class AssetImageSource implements ImageSource {
+
+    private final AssetManager assets;
+
+    private final String path;
+
+    /**
+     * @param assets asset manager of the application
+     * @param path   path to directory with images inside assets
+     */
+    public AssetImageSource(AssetManager assets, String path) {
+        this.assets = assets;
+        this.path = path;
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        return Arrays.asList(assets.list(path));
+    }
+
+    @Override
+    public Image decode(String name) throws IOException {
+        try (InputStream input = assets.open(path + name)) {
+            Bitmap bitmap = BitmapFactory.decodeStream(input);
+            if (bitmap == null)
+                return null;
+
+            int width = bitmap.getWidth(), height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap.recycle();
+            return new Image(width, height, pixels);
+        }
+    }
+}
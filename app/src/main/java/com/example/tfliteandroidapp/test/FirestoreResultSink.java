@@ -0,0 +1,56 @@
+package com.example.tfliteandroidapp.test;
+
+import com.example.tfliteandroidapp.core.ResultRecord;
+import com.example.tfliteandroidapp.core.ResultSink;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes results into Firestore collection in a single write batch.
+ * Journal record id is used as document id, so a retried batch does not duplicate documents.
+ */
+public class FirestoreResultSink implements ResultSink {
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    private final FirebaseFirestore db;
+
+    private final String collection;
+
+    private final Gson gson = new GsonBuilder().setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE).create();
+
+    public FirestoreResultSink(FirebaseFirestore db, String collection) {
+        this.db = db;
+        this.collection = collection;
+    }
+
+    /**
+     * Blocks until Firestore confirms the batch, must not be called on the main thread.
+     */
+    @Override
+    public void write(List<ResultRecord> records) throws Exception {
+        CollectionReference documents = db.collection(collection);
+        WriteBatch batch = db.batch();
+
+        for (ResultRecord record : records) {
+            Map<String, Object> document = gson.fromJson(record.json, MAP_TYPE);
+            document.put("createdAt", FieldValue.serverTimestamp());
+            batch.set(documents.document(record.id), document);
+        }
+        Tasks.await(batch.commit(), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.tfliteandroidapp.test;
+
+import android.content.Context;
+
+import com.example.tfliteandroidapp.core.ColdStart;
+import com.example.tfliteandroidapp.core.Device;
+import com.example.tfliteandroidapp.core.InferenceBackend;
+import com.example.tfliteandroidapp.core.InferenceSession;
+import com.example.tfliteandroidapp.core.TensorInfo;
+import com.example.tfliteandroidapp.core.TensorType;
+import com.example.tfliteandroidapp.core.TuningProfile;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.gpu.GpuDelegate;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TensorFlow Lite backend of the benchmark core.
+ * <p>
+ * Sessions wrap an interpreter together with the GPU or NNAPI delegate which was used to create it.
+ * Memory mapped models are cached in LRU order, so one mapping is shared by interpreters of all devices.
+ * Thread counts of sessions, tuned ones included, are applied to the interpreter options here.
+ */
+public class TfLiteInferenceBackend implements InferenceBackend {
+
+    private static final int DEFAULT_MAX_MODELS = 64;
+
+    /**
+     * Interpreter together with delegate which was used to create it
+     */
+    static class Session implements InferenceSession {
+        final Interpreter interpreter;
+
+        private final AutoCloseable delegate;
+
+        Session(Interpreter interpreter, AutoCloseable delegate) {
+            this.interpreter = interpreter;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public TensorInfo getInput() {
+            return toInfo(interpreter.getInputTensor(0));
+        }
+
+        @Override
+        public TensorInfo getOutput() {
+            return toInfo(interpreter.getOutputTensor(0));
+        }
+
+        @Override
+        public void resize(int batchSize) {
+            int[] shape = interpreter.getInputTensor(0).shape();
+            shape[0] = batchSize;
+            interpreter.resizeInput(0, shape);
+        }
+
+        @Override
+        public void run(ByteBuffer input, ByteBuffer output) {
+            interpreter.run(input, output);
+        }
+
+        @Override
+        public long getLastNativeNanos() {
+            Long nanos = interpreter.getLastNativeInferenceDurationNanoseconds();
+            return nanos != null ? nanos : -1;
+        }
+
+        @Override
+        public void close() {
+            interpreter.close();
+            if (delegate != null) {
+                try {
+                    delegate.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private static TensorInfo toInfo(Tensor tensor) {
+            Tensor.QuantizationParams quantization = tensor.quantizationParams();
+            return new TensorInfo(tensor.shape(),
+                    tensor.dataType() == DataType.UINT8 ? TensorType.UINT8 : TensorType.FLOAT32,
+                    quantization.getScale(), quantization.getZeroPoint());
+        }
+    }
+
+    private final Context context;
+
+    private final LinkedHashMap<String, MappedByteBuffer> models;
+
+    public TfLiteInferenceBackend(Context context) {
+        this(context, DEFAULT_MAX_MODELS);
+    }
+
+    public TfLiteInferenceBackend(Context context, final int maxModels) {
+        this.context = context;
+        models = new LinkedHashMap<String, MappedByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedByteBuffer> eldest) {
+                return size() > maxModels;
+            }
+        };
+    }
+
+    /**
+     * Creates interpreter of the model with delegate of the device. Model is mapped
+     * only on the first call, modelLoadNanos of later cold starts stays 0.
+     *
+     * @param model      path to .tflite file inside assets
+     * @param device     device used for executing inference
+     * @param numThreads thread count of the interpreter, -1 leaves the default
+     * @param coldStart  phases of the interpreter creation
+     * @throws IOException when model could not be loaded
+     */
+    @Override
+    public synchronized InferenceSession open(String model, Device device, int numThreads, ColdStart coldStart)
+            throws IOException {
+        MappedByteBuffer buffer = models.get(model);
+
+        if (buffer == null) {
+            long startTime = System.nanoTime();
+            buffer = FileUtil.loadMappedFile(context, model);
+            coldStart.modelLoadNanos = System.nanoTime() - startTime;
+            models.put(model, buffer);
+        }
+        coldStart.modelBytes = buffer.capacity();
+        return create(buffer, device, numThreads, coldStart);
+    }
+
+    /**
+     * Forgets mapped models, open interpreters keep their mappings.
+     */
+    @Override
+    public synchronized void clear() {
+        models.clear();
+    }
+
+    /**
+     * Returns interpreter options with the thread count of a tuned configuration, so the application
+     * can create interpreters the way the benchmark ran them. Delegates are added by the caller.
+     */
+    public static Interpreter.Options createOptions(TuningProfile.Config config) {
+        return createOptions(config.numThreads);
+    }
+
+    private static Interpreter.Options createOptions(int numThreads) {
+        Interpreter.Options options = new Interpreter.Options();
+        if (numThreads > 0)
+            options.setNumThreads(numThreads);
+        return options;
+    }
+
+    private Session create(MappedByteBuffer model, Device device, int numThreads, ColdStart coldStart) {
+        Interpreter.Options options = createOptions(numThreads);
+        AutoCloseable delegate = null;
+        long startTime = System.nanoTime(), interpreterStartTime;
+
+        switch (device) {
+            case GPU:
+                GpuDelegate gpuDelegate = new GpuDelegate();
+                options.addDelegate(gpuDelegate);
+                delegate = gpuDelegate;
+                break;
+            case NNAPI:
+                NnApiDelegate nnApiDelegate = new NnApiDelegate();
+                options.addDelegate(nnApiDelegate);
+                delegate = nnApiDelegate;
+                break;
+            case CPU:
+            case CPU4:
+                break;
+        }
+        interpreterStartTime = System.nanoTime();
+        coldStart.delegateInitNanos = interpreterStartTime - startTime;
+
+        try {
+            Session session = new Session(new Interpreter(model, options), delegate);
+            coldStart.interpreterInitNanos = System.nanoTime() - interpreterStartTime;
+            return session;
+        } catch (RuntimeException e) {
+            if (delegate != null) {
+                try {
+                    delegate.close();
+                } catch (Exception closeException) {
+                    closeException.printStackTrace();
+                }
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Searches thread counts and batch sizes of one model with successive halving.
+ * <p>
+ * Every candidate starts with a small number of inferences. After every rung the better half
+ * of candidates survives and the number of inferences is doubled, so most of the time is spent
+ * on promising configurations. Inference times of a candidate are kept between rungs and between
+ * the latency and the throughput search. Candidates whose p99 batch latency exceeds the SLO are
+ * ranked after all candidates which meet it.
+ */
+public class AutoTuner {
+
+    /**
+     * Runs inferences of the model with given configuration
+     */
+    public interface Measurer {
+        /**
+         * Records duration of inferences batches of given size into the histogram.
+         *
+         * @throws Exception when the model cannot run with the configuration
+         */
+        void measure(int numThreads, int batchSize, int inferences, LatencyHistogram histogram) throws Exception;
+    }
+
+    /**
+     * Configuration of the interpreter together with its measured statistics
+     */
+    static final class Candidate {
+        final int numThreads;
+
+        final int batchSize;
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        boolean failed;
+
+        Candidate(int numThreads, int batchSize) {
+            this.numThreads = numThreads;
+            this.batchSize = batchSize;
+        }
+
+        double throughput() {
+            return batchSize * 1e9 / histogram.getMean();
+        }
+    }
+
+    private final Measurer measurer;
+
+    private final long latencySloNanos;
+
+    private final int initialInferences;
+
+    private final List<Candidate> candidates = new ArrayList<>();
+
+    private long measuredInferences;
+
+    private BenchmarkListener listener = BenchmarkListener.NONE;
+
+    /**
+     * @param measurer          runs inferences of the model
+     * @param threads           thread counts to search
+     * @param batchSizes        batch sizes to search
+     * @param latencySloNanos   maximum p99 latency of one batch, 0 means no limit
+     * @param initialInferences inferences of every candidate in the first rung
+     */
+    public AutoTuner(Measurer measurer, List<Integer> threads, List<Integer> batchSizes, long latencySloNanos,
+                     int initialInferences) {
+        this.measurer = measurer;
+        this.latencySloNanos = latencySloNanos;
+        this.initialInferences = Math.max(1, initialInferences);
+        for (int numThreads : threads)
+            for (int batchSize : batchSizes)
+                candidates.add(new Candidate(numThreads, batchSize));
+    }
+
+    /**
+     * Sets listener which is told about candidates which could not run.
+     */
+    public void setListener(BenchmarkListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns configuration with the lowest median batch latency or null when no configuration could run
+     */
+    public TuningProfile.Config tuneLatency() {
+        return toConfig(search(Comparator.comparingDouble(c -> c.histogram.getPercentile(50))));
+    }
+
+    /**
+     * Returns configuration with the highest throughput in images per second or null when no configuration could run
+     */
+    public TuningProfile.Config tuneThroughput() {
+        return toConfig(search((first, second) -> Double.compare(second.throughput(), first.throughput())));
+    }
+
+    /**
+     * Returns number of inferences run by all searches so far
+     */
+    public long getMeasuredInferences() {
+        return measuredInferences;
+    }
+
+    private Candidate search(final Comparator<Candidate> objective) {
+        List<Candidate> alive = new ArrayList<>(candidates);
+        Comparator<Candidate> ranking = (first, second) -> {
+            int slo = Boolean.compare(!meetsSlo(first), !meetsSlo(second));
+            return slo != 0 ? slo : objective.compare(first, second);
+        };
+        int inferences = initialInferences;
+
+        while (true) {
+            List<Candidate> measured = new ArrayList<>();
+            for (Candidate candidate : alive) {
+                if (measure(candidate, inferences))
+                    measured.add(candidate);
+            }
+            alive = measured;
+            if (alive.size() <= 1)
+                break;
+            Collections.sort(alive, ranking);
+            alive = new ArrayList<>(alive.subList(0, (alive.size() + 1) / 2));
+            inferences *= 2;
+        }
+        return alive.isEmpty() ? null : alive.get(0);
+    }
+
+    /**
+     * Measures candidate until it has at least given number of inferences.
+     *
+     * @return false when the candidate cannot run
+     */
+    private boolean measure(Candidate candidate, int inferences) {
+        long missing = inferences - candidate.histogram.getCount();
+
+        if (candidate.failed)
+            return false;
+        if (missing > 0) {
+            try {
+                measurer.measure(candidate.numThreads, candidate.batchSize, (int) missing, candidate.histogram);
+                measuredInferences += missing;
+            } catch (Exception e) {
+                listener.onMessage("Tuning " + candidate.numThreads + " threads, batch " + candidate.batchSize
+                        + " failed: " + e);
+                candidate.failed = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean meetsSlo(Candidate candidate) {
+        return latencySloNanos <= 0 || candidate.histogram.getPercentile(99) <= latencySloNanos;
+    }
+
+    private TuningProfile.Config toConfig(Candidate candidate) {
+        if (candidate == null)
+            return null;
+        TuningProfile.Config config = new TuningProfile.Config();
+        config.numThreads = candidate.numThreads;
+        config.batchSize = candidate.batchSize;
+        config.inferences = candidate.histogram.getCount();
+        config.p50 = candidate.histogram.getPercentile(50) / 1e6;
+        config.p99 = candidate.histogram.getPercentile(99) / 1e6;
+        config.throughput = candidate.throughput();
+        config.meetsSlo = meetsSlo(candidate);
+        return config;
+    }
+}
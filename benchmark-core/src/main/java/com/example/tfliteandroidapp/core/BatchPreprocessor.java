@@ -0,0 +1,176 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preprocesses several images into one buffer on a work-stealing pool.
+ * <p>
+ * Work is split into units of one image, or of a tile of rows of one image when there are fewer
+ * images than workers, so a single large image is still shared by all workers. Units are split
+ * recursively in halves and idle workers steal the other halves. Every unit writes through its own
+ * view of the output buffer into a disjoint range, so workers never share bytes. process() returns
+ * only when all units finished, so workers are parked while the caller times inference afterwards.
+ * With one worker units run on the calling thread and no pool is created.
+ */
+public class BatchPreprocessor {
+
+    /**
+     * Smallest number of rows of a tile, smaller tiles cost more in scheduling than they save
+     */
+    private static final int MIN_TILE_ROWS = 8;
+
+    private final int workers;
+
+    private final ForkJoinPool pool;
+
+    private StageTracer tracer = StageTracer.DISABLED;
+
+    private final AtomicLong workNanos = new AtomicLong();
+
+    private long wallNanos;
+
+    /**
+     * @param workers number of worker threads, 0 means number of cores, 1 processes on the calling thread
+     */
+    public BatchPreprocessor(int workers) {
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        pool = this.workers > 1 ? new ForkJoinPool(this.workers) : null;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets tracer which records preprocessing of every unit on its worker thread.
+     */
+    public void setTracer(StageTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Writes tensors of the images one after another into the output buffer.
+     *
+     * @param preprocessors compiled plan of every image, all with the same target height
+     * @param pixels        ARGB pixels of every image
+     * @param output        direct buffer of pixels.length tensors of sampleSize bytes, its position is not changed
+     * @param sampleSize    number of bytes of one tensor
+     */
+    public void process(ImagePreprocessor[] preprocessors, int[][] pixels, ByteBuffer output, int sampleSize) {
+        if (pixels.length == 0)
+            return;
+        int height = preprocessors[0].getTargetHeight();
+        int tiles = pixels.length >= workers ? 1
+                : Math.max(1, Math.min((workers + pixels.length - 1) / pixels.length, height / MIN_TILE_ROWS));
+        Units units = new Units(preprocessors, pixels, output, sampleSize, height, tiles);
+        long startTime = System.nanoTime();
+
+        if (pool != null)
+            pool.invoke(new Split(units, 0, pixels.length * tiles));
+        else
+            for (int unit = 0; unit < pixels.length * tiles; unit++)
+                units.run(unit);
+        wallNanos += System.nanoTime() - startTime;
+    }
+
+    /**
+     * Returns summed duration of all units in nanoseconds, the time a single thread would need
+     */
+    public long getWorkNanos() {
+        return workNanos.get();
+    }
+
+    /**
+     * Returns wall time of all process() calls in nanoseconds
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * Returns work time relative to wall time, an estimate of speedup against the single-threaded path
+     */
+    public double getSpeedup() {
+        return wallNanos > 0 ? (double) workNanos.get() / wallNanos : 0;
+    }
+
+    /**
+     * Stops worker threads.
+     */
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "Preprocessing workers: " + workers + " wall: " + wallNanos / 1000000 + "ms work: "
+                + workNanos.get() / 1000000 + "ms speedup: " + String.format(Locale.US, "%.2f", getSpeedup());
+    }
+
+    /**
+     * Images split into units of tiles rows
+     */
+    private final class Units {
+        final ImagePreprocessor[] preprocessors;
+        final int[][] pixels;
+        final ByteBuffer output;
+        final int sampleSize;
+        final int height;
+        final int tiles;
+
+        Units(ImagePreprocessor[] preprocessors, int[][] pixels, ByteBuffer output, int sampleSize, int height, int tiles) {
+            this.preprocessors = preprocessors;
+            this.pixels = pixels;
+            this.output = output;
+            this.sampleSize = sampleSize;
+            this.height = height;
+            this.tiles = tiles;
+        }
+
+        void run(int unit) {
+            long startTime = System.nanoTime();
+            int sample = unit / tiles, tile = unit % tiles;
+            int firstRow = height * tile / tiles, endRow = height * (tile + 1) / tiles;
+            ByteBuffer view = output.duplicate().order(ByteOrder.nativeOrder());
+
+            view.position(sample * sampleSize + firstRow * (sampleSize / height));
+            preprocessors[sample].processRows(pixels[sample], view, firstRow, endRow);
+            long endTime = System.nanoTime();
+            workNanos.addAndGet(endTime - startTime);
+            tracer.record(StageTracer.Stage.PREPROCESS, startTime, endTime, sample);
+        }
+    }
+
+    /**
+     * Range of units split in halves until a single unit is left
+     */
+    private static final class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Units units;
+        private final int first;
+        private final int end;
+
+        Split(Units units, int first, int end) {
+            this.units = units;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - first == 1) {
+                units.run(first);
+                return;
+            }
+            int middle = (first + end) >>> 1;
+            invokeAll(new Split(units, first, middle), new Split(units, middle, end));
+        }
+    }
+}
@@ -0,0 +1,1122 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Runs benchmark plans on an inference backend, independent of the platform.
+ * <p>
+ * Jobs of the plan run one after another. Results of jobs which differ only in model and round
+ * are appended together as one FinalResult to the result journal, the uploader is paused while
+ * inferences are timed. Platform adapters provide the backend, images, memory probe and
+ * system information.
+ */
+public class BenchmarkEngine {
+
+    private static final int MAX_RESULTS = 5;
+    private static final int PIPELINE_DEPTH = 3;
+    private static final int RECORD_OVERHEAD_ITERATIONS = 100000;
+    private static final int TRACE_CAPACITY = 1 << 16;
+    /**
+     * Throughput stops scaling when next interpreter adds less than this fraction of throughput of one
+     */
+    private static final double CONCURRENCY_MIN_GAIN = 0.1;
+
+    private final SessionCache sessionCache;
+
+    private final ImageSource imageSource;
+
+    /**
+     * Results waiting for upload
+     */
+    private final ResultJournal resultJournal;
+
+    /**
+     * Uploads journal on a background thread
+     */
+    private final ResultUploader resultUploader;
+
+    private final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    private BenchmarkListener listener = BenchmarkListener.NONE;
+
+    private SystemInfo systemInfo = SystemInfo.ofJvm();
+
+    private File tuningProfileFile;
+
+    private ModelCatalog modelCatalog;
+
+    private DatasetPack datasetPack;
+
+    private File datasetPackFile;
+
+    private File traceFile;
+
+    /**
+     * Records stages of the run when plan.trace is set
+     */
+    private StageTracer tracer = StageTracer.DISABLED;
+
+    /**
+     * Session which runs model inference
+     */
+    private InferenceSession session;
+
+    /**
+     * Current device used for executing classification
+     */
+    private Device currentDevice;
+
+    /**
+     * Thread count of the session of current job
+     */
+    private int numThreads;
+
+    private double recordOverheadNanos;
+
+    /**
+     * Decoded images and their preprocessed tensors shared by all models of the sweep
+     */
+    private DatasetCache datasetCache;
+
+    private BatchPreprocessor batchPreprocessor;
+
+    /**
+     * Direct input buffers of pipeline slots and concurrent workers
+     */
+    private InputBufferPool inputBufferPool;
+
+    /**
+     * Runs preparation and post-processing of batches on worker threads when pipelined mode is on
+     */
+    private PipelinedRunner pipelinedRunner;
+
+    private boolean pipelined = false;
+
+    /**
+     * Output probability buffer of current session
+     */
+    private ByteBuffer outputBuffer;
+
+    /**
+     * Output probability buffers of pipeline slots
+     */
+    private final ByteBuffer[] pipelineOutputBuffers = new ByteBuffer[PIPELINE_DEPTH];
+
+    private TensorInfo outputInfo;
+
+    /**
+     * Finds K best classes of every sample of the output probability
+     */
+    private TopKPostProcessor topKPostProcessor;
+
+    /**
+     * Shape of input image
+     */
+    private int imageSizeY, imageSizeX;
+
+    private TensorType imageDataType;
+
+    private int batchSize;
+
+    private float imgMean, imgStd;
+
+    /**
+     * Quantization of uint8 output, only K best scores of every sample are dequantized
+     */
+    private float outputScale;
+
+    private int outputZeroPoint;
+
+    /**
+     * @param sessionCache   cache of sessions of the inference backend
+     * @param imageSource    images of the data set
+     * @param resultJournal  journal to which results are appended
+     * @param resultUploader uploader of the journal, paused while inferences are timed
+     */
+    public BenchmarkEngine(SessionCache sessionCache, ImageSource imageSource, ResultJournal resultJournal,
+                           ResultUploader resultUploader) {
+        this.sessionCache = sessionCache;
+        this.imageSource = imageSource;
+        this.resultJournal = resultJournal;
+        this.resultUploader = resultUploader;
+    }
+
+    public void setListener(BenchmarkListener listener) {
+        this.listener = listener;
+    }
+
+    public void setSystemInfo(SystemInfo systemInfo) {
+        this.systemInfo = systemInfo;
+    }
+
+    /**
+     * Sets file of the tuning profile, tuning runs are not saved and plan.useTuningProfile
+     * has no effect without it.
+     */
+    public void setTuningProfileFile(File tuningProfileFile) {
+        this.tuningProfileFile = tuningProfileFile;
+    }
+
+    /**
+     * Sets catalog of model metadata used to skip unsupported jobs before any model is loaded.
+     */
+    public void setModelCatalog(ModelCatalog modelCatalog) {
+        this.modelCatalog = modelCatalog;
+    }
+
+    /**
+     * Sets pack of preprocessed tensors, images are decoded only for input signatures it does not contain.
+     */
+    public void setDatasetPack(DatasetPack datasetPack) {
+        this.datasetPack = datasetPack;
+    }
+
+    /**
+     * Sets file to which the pack is written after the run when tensors were missing in it.
+     */
+    public void setDatasetPackFile(File datasetPackFile) {
+        this.datasetPackFile = datasetPackFile;
+    }
+
+    /**
+     * Sets file to which Chrome trace JSON of traced runs is written.
+     */
+    public void setTraceFile(File traceFile) {
+        this.traceFile = traceFile;
+    }
+
+    /**
+     * Turns on pipelined execution, preparation and post-processing of batches
+     * run on worker threads while current batch is inferring.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Runs all jobs of the benchmark plan, or tunes its models when plan.tune is set.
+     *
+     * @param plan   benchmark plan
+     * @param lister source of model file names
+     * @return saved results
+     * @throws IOException when models could not be listed
+     */
+    public List<FinalResult> run(BenchmarkPlan plan, BenchmarkPlanner.ModelLister lister) throws IOException {
+        BenchmarkPlanner planner = new BenchmarkPlanner();
+        List<BenchmarkJob> jobs;
+        List<FinalResult> results = new ArrayList<>();
+
+        if (modelCatalog != null)
+            modelCatalog.setListener(listener);
+        planner.setCatalog(modelCatalog);
+        if (plan.useTuningProfile && !plan.tune)
+            planner.setTuningProfile(loadTuningProfile());
+        jobs = planner.plan(plan, lister);
+        if (modelCatalog != null) {
+            listener.onMessage(modelCatalog.toString());
+            try {
+                modelCatalog.save();
+            } catch (IOException e) {
+                listener.onMessage("Could not save model catalog: " + e.getMessage());
+            }
+        }
+
+        for (String skipped : planner.getSkipped())
+            listener.onMessage("Skipped " + skipped);
+        listener.onMessage("Plan " + plan.name + ": " + jobs.size() + " jobs, "
+                + planner.getSkipped().size() + " skipped");
+
+        datasetCache = new DatasetCache(imageSource, plan.samples, plan.seed, DatasetCache.DEFAULT_MEMORY_BUDGET);
+        datasetCache.setPack(datasetPack);
+        datasetCache.setListener(listener);
+        resultUploader.setListener(listener);
+        tracer = plan.trace ? new StageTracer(TRACE_CAPACITY, plan.traceSampling) : StageTracer.DISABLED;
+        datasetCache.setTracer(tracer);
+        batchPreprocessor = new BatchPreprocessor(plan.preprocessWorkers);
+        datasetCache.setBatchPreprocessor(batchPreprocessor);
+        inputBufferPool = new InputBufferPool(InputBufferPool.DEFAULT_MEMORY_BUDGET);
+        if (pipelined)
+            pipelinedRunner = new PipelinedRunner();
+
+        recordOverheadNanos = LatencyHistogram.measureRecordOverhead(RECORD_OVERHEAD_ITERATIONS);
+
+        try {
+            if (plan.tune)
+                runTuning(plan, jobs);
+            else if (plan.cascade)
+                runCascade(plan, results);
+            else
+                runJobs(plan, jobs, results);
+        } finally {
+            sessionCache.close();
+            session = null;
+            listener.onMessage(datasetCache.toString());
+            savePack();
+            saveTrace();
+            datasetCache.clear();
+            inputBufferPool.clear();
+            batchPreprocessor.shutdown();
+            if (pipelinedRunner != null) {
+                pipelinedRunner.shutdown();
+                pipelinedRunner = null;
+            }
+        }
+
+        listener.onMessage(sessionCache.getStats().toString());
+        return results;
+    }
+
+    private void savePack() {
+        if (datasetPackFile == null)
+            return;
+        try {
+            if (datasetCache.writePack(datasetPackFile))
+                listener.onMessage("Dataset pack saved");
+        } catch (IOException e) {
+            listener.onMessage("Could not save dataset pack: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes trace to a temporary file and renames it, so a complete trace is never replaced by a partial one.
+     */
+    private void saveTrace() {
+        if (!tracer.isEnabled() || traceFile == null)
+            return;
+        File tmp = new File(traceFile.getPath() + ".tmp");
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp),
+                    StandardCharsets.UTF_8))) {
+                tracer.writeChromeTrace(writer);
+            }
+            if (!tmp.renameTo(traceFile))
+                throw new IOException("Could not replace " + traceFile);
+            listener.onMessage("Trace saved: " + tracer.size() + " events, " + tracer.getDropped() + " dropped");
+        } catch (IOException e) {
+            listener.onMessage("Could not save trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs jobs in the order of the scheduler and saves results of every group of jobs
+     * as soon as all jobs of the group are committed. Sessions are evicted when the device
+     * changes in nested order, shuffled order relies on the LRU of the session cache.
+     *
+     * @param plan    plan of the jobs
+     * @param jobs    jobs in the order of the planner
+     * @param results list to which saved results are added
+     */
+    private void runJobs(BenchmarkPlan plan, List<BenchmarkJob> jobs, List<FinalResult> results) {
+        JobScheduler scheduler = new JobScheduler(plan, jobs);
+        Map<String, FinalResult> groups = new LinkedHashMap<>();
+        Map<String, Integer> remaining = new HashMap<>();
+        BenchmarkJob previous = null;
+
+        for (BenchmarkJob job : jobs) {
+            Integer count = remaining.get(job.getGroupKey());
+            remaining.put(job.getGroupKey(), count != null ? count + 1 : 1);
+        }
+
+        while (!Thread.currentThread().isInterrupted()) {
+            if (scheduler.isCanaryDue()) {
+                commit(checkCanary(plan, scheduler), plan, scheduler, groups, remaining, results);
+                continue;
+            }
+            if (!scheduler.hasNext())
+                break;
+
+            BenchmarkJob job = scheduler.next();
+            if (plan.order == BenchmarkPlan.JobOrder.NESTED && (previous == null || previous.device != job.device))
+                sessionCache.evictAll();
+            previous = job;
+
+            ModelResult modelResult = runJob(job, plan);
+            if (Thread.currentThread().isInterrupted())
+                break;
+            commit(scheduler.complete(job, modelResult), plan, scheduler, groups, remaining, results);
+        }
+
+        commit(scheduler.drain(), plan, scheduler, groups, remaining, results);
+        for (FinalResult finalResult : groups.values())
+            saveFinalResult(finalResult, plan, scheduler, results);
+    }
+
+    /**
+     * Adds results to the results of their groups and saves groups whose jobs are all committed.
+     */
+    private void commit(List<JobScheduler.Completed> committed, BenchmarkPlan plan, JobScheduler scheduler,
+                        Map<String, FinalResult> groups, Map<String, Integer> remaining, List<FinalResult> results) {
+        for (JobScheduler.Completed completed : committed) {
+            String key = completed.job.getGroupKey();
+            FinalResult finalResult = groups.get(key);
+            if (finalResult == null) {
+                finalResult = new FinalResult();
+                groups.put(key, finalResult);
+            }
+            if (completed.result != null)
+                finalResult.add(completed.result);
+
+            int left = remaining.get(key) - 1;
+            remaining.put(key, left);
+            if (left == 0) {
+                groups.remove(key);
+                saveFinalResult(finalResult, plan, scheduler, results);
+            }
+        }
+    }
+
+    /**
+     * Measures the canary and cools the device down while its latency drifts.
+     *
+     * @return results validated by the reading
+     */
+    private List<JobScheduler.Completed> checkCanary(BenchmarkPlan plan, JobScheduler scheduler) {
+        List<JobScheduler.Completed> committed = new ArrayList<>();
+        boolean drifted;
+
+        try {
+            drifted = scheduler.onCanary(measureCanary(plan), committed);
+            for (int i = 0; drifted && i < plan.maxCooldowns; i++) {
+                listener.onMessage(String.format("Canary drifted %+.1f%%, cooling down for %ds",
+                        scheduler.getReadings().get(scheduler.getReadings().size() - 1).drift * 100,
+                        plan.cooldownMs / 1000));
+                Thread.sleep(plan.cooldownMs);
+                drifted = scheduler.onCooldown(measureCanary(plan));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            listener.onMessage("Canary could not run, results are not validated: " + e.getMessage());
+            committed.addAll(scheduler.disableCanary());
+        }
+        return committed;
+    }
+
+    /**
+     * Returns median latency of the canary model with batch size 1 on the canary device
+     */
+    private double measureCanary(BenchmarkPlan plan) throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        currentDevice = plan.canaryDevice;
+        beginTimedSection();
+        try {
+            measureConfig(plan.modelsBaseDir + plan.canaryModel, plan.canaryModel,
+                    plan.canaryDevice.getDefaultThreads(), 1, plan.canaryInferences, histogram);
+        } finally {
+            endTimedSection();
+        }
+        return histogram.getPercentile(50);
+    }
+
+    /**
+     * Pauses uploads, waiting for the batch in flight, and tells the listener that inferences are timed.
+     */
+    private void beginTimedSection() throws InterruptedException {
+        resultUploader.pause();
+        listener.onTimedSection(true);
+    }
+
+    private void endTimedSection() {
+        listener.onTimedSection(false);
+        resultUploader.resume();
+    }
+
+    /**
+     * Tunes thread count and batch size of every model on every device of the plan
+     * and saves the winners to the tuning profile after every model.
+     *
+     * @param plan plan of the jobs
+     * @param jobs jobs of the plan, their thread counts, batch sizes and rounds are ignored
+     */
+    private void runTuning(BenchmarkPlan plan, List<BenchmarkJob> jobs) {
+        Set<String> tuned = new HashSet<>();
+        TuningProfile profile = loadTuningProfile();
+
+        try {
+            beginTimedSection();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            for (BenchmarkJob job : jobs) {
+                if (!tuned.add(job.device + ":" + job.modelsDir + "/" + job.model))
+                    continue;
+                TuningProfile.ModelProfile modelProfile = tuneModel(plan, job);
+                sessionCache.evictAll();
+                if (modelProfile == null)
+                    continue;
+
+                profile.put(job.device, job.getModelName(), modelProfile);
+                if (tuningProfileFile != null) {
+                    try {
+                        profile.save(tuningProfileFile);
+                    } catch (IOException e) {
+                        listener.onMessage("Could not save tuning profile: " + e.getMessage());
+                    }
+                }
+                listener.onMessage(job.device + " " + job.getModelName() + " latency: "
+                        + modelProfile.latency.numThreads + " threads, batch " + modelProfile.latency.batchSize
+                        + " throughput: " + modelProfile.throughput.numThreads + " threads, batch "
+                        + modelProfile.throughput.batchSize);
+            }
+        } finally {
+            endTimedSection();
+        }
+    }
+
+    /**
+     * Keeps sessions of both models of the cascade open and runs the cascade with every threshold
+     * of the plan. Both models take their tensors from the same decoded images of the data set.
+     *
+     * @param plan    plan with the models of the cascade
+     * @param results list to which the saved result is added
+     */
+    private void runCascade(BenchmarkPlan plan, List<FinalResult> results) {
+        SessionCache.Entry small = null, large = null;
+        FinalResult finalResult = new FinalResult();
+        int threads = plan.cascadeDevice.getDefaultThreads();
+
+        try {
+            small = sessionCache.open(plan.modelsBaseDir + plan.cascadeSmallModel, plan.cascadeDevice, threads, 1);
+            large = sessionCache.open(plan.modelsBaseDir + plan.cascadeLargeModel, plan.cascadeDevice, threads, 1);
+            DatasetCache.Samples smallSamples = getSamples(small.session);
+            DatasetCache.Samples largeSamples = getSamples(large.session);
+            int samples = Math.min(smallSamples.count, largeSamples.count);
+
+            beginTimedSection();
+            try {
+                finalResult.cascade = new CascadeRunner(Clock.SYSTEM).run(createClassifier(small.session, smallSamples),
+                        createClassifier(large.session, largeSamples), samples, plan.cascadePasses,
+                        plan.cascadeThresholds);
+            } finally {
+                endTimedSection();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            listener.onMessage("Cascade could not run: " + e.getMessage());
+            return;
+        } finally {
+            if (small != null)
+                small.close();
+            if (large != null)
+                large.close();
+        }
+
+        finalResult.cascade.smallModel = plan.cascadeSmallModel;
+        finalResult.cascade.largeModel = plan.cascadeLargeModel;
+        for (CascadeRunner.Level level : finalResult.cascade.levels)
+            listener.onMessage(String.format("Cascade threshold %.2f: %.1f%% escalated, %.1f%% agreement, "
+                            + "mean %.2fms, %.1f%% saved", level.threshold, level.escalationRate * 100,
+                    level.agreement * 100, level.latency.mean / 1e6, level.latencySaved * 100));
+        saveFinalResult(finalResult, plan, null, results);
+    }
+
+    /**
+     * Returns preprocessed data set for the input signature of the session
+     */
+    private DatasetCache.Samples getSamples(InferenceSession session) {
+        TensorInfo inputInfo = session.getInput();
+        int[] shape = inputInfo.getShape();
+        boolean uint8 = inputInfo.getType() == TensorType.UINT8;
+
+        return datasetCache.getTensors(new DatasetCache.Key(shape[1], shape[2], inputInfo.getType(),
+                uint8 ? 0.0f : 127.5f, uint8 ? 1.0f : 127.5f));
+    }
+
+    /**
+     * Returns classifier which runs the session on single samples and finds their top-1 class
+     * with its own output buffer.
+     */
+    private CascadeRunner.Classifier createClassifier(final InferenceSession session, DatasetCache.Samples samples) {
+        final TensorInfo output = session.getOutput();
+        final int[] shape = output.getShape();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(output.getByteSize() / Math.max(1, shape[0]))
+                .order(ByteOrder.nativeOrder());
+        final TopKPostProcessor topK = new TopKPostProcessor(1, shape[shape.length - 1], 1);
+        final float scale = output.isQuantized() ? output.getScale() : 1.0f / 255.0f;
+        final ByteBuffer[] batches = samples.batches(1);
+
+        return new CascadeRunner.Classifier() {
+            @Override
+            public int classify(int sample) throws Exception {
+                session.run(batches[sample], (ByteBuffer) buffer.rewind());
+                buffer.rewind();
+                if (output.getType() == TensorType.UINT8)
+                    topK.processQuantized(buffer, 1, scale, output.getZeroPoint());
+                else
+                    topK.processFloat(buffer, 1);
+                return topK.getIndex(0, 0);
+            }
+
+            @Override
+            public float getScore() {
+                return topK.getScore(0, 0);
+            }
+        };
+    }
+
+    /**
+     * Returns saved tuning profile, empty profile when there is no file or it could not be read
+     */
+    private TuningProfile loadTuningProfile() {
+        if (tuningProfileFile != null) {
+            try {
+                return TuningProfile.load(tuningProfileFile);
+            } catch (IOException e) {
+                listener.onMessage("Could not load tuning profile: " + e.getMessage());
+            }
+        }
+        return new TuningProfile();
+    }
+
+    /**
+     * Searches thread counts and batch sizes of the model of the job.
+     *
+     * @return winners or null when the model could not run with any configuration
+     */
+    private TuningProfile.ModelProfile tuneModel(BenchmarkPlan plan, BenchmarkJob job) {
+        final String path = plan.modelsBaseDir + job.modelsDir + "/" + job.model;
+        final String model = job.modelsDir + "/" + job.model;
+        List<Integer> threads = job.device.isCpu() ? getTuneThreads(plan)
+                : Collections.singletonList(job.device.getDefaultThreads());
+        List<Integer> batchSizes = new ArrayList<>();
+        TuningProfile.ModelProfile modelProfile = new TuningProfile.ModelProfile();
+        ModelInfo info = modelCatalog != null ? modelCatalog.get(path) : null;
+        AutoTuner tuner;
+
+        for (int size : plan.tuneBatchSizes)
+            if (BenchmarkPlanner.unsupportedReason(plan, job.device, job.model, info, size) == null)
+                batchSizes.add(size);
+
+        currentDevice = job.device;
+        tuner = new AutoTuner((numThreads, batchSize, inferences, histogram) ->
+                measureConfig(path, model, numThreads, batchSize, inferences, histogram),
+                threads, batchSizes, (long) (plan.latencySloMs * 1e6), plan.tuneInferences);
+        tuner.setListener(listener);
+        modelProfile.latency = tuner.tuneLatency();
+        modelProfile.throughput = tuner.tuneThroughput();
+        modelProfile.latencySloMs = plan.latencySloMs;
+        modelProfile.tunedAt = System.currentTimeMillis();
+        return modelProfile.latency != null ? modelProfile : null;
+    }
+
+    private static List<Integer> getTuneThreads(BenchmarkPlan plan) {
+        TreeSet<Integer> threads = new TreeSet<>(Arrays.asList(1, 2, 4, Runtime.getRuntime().availableProcessors()));
+        return plan.tuneThreads.isEmpty() ? new ArrayList<>(threads) : plan.tuneThreads;
+    }
+
+    /**
+     * Runs inferences of the model with given thread count and batch size.
+     * First inference after switching configuration is not recorded.
+     */
+    private void measureConfig(String path, String model, int threads, int batch, int inferences,
+                               LatencyHistogram histogram) throws Exception {
+        DatasetCache.Samples samples;
+        ByteBuffer[] batches;
+        long startTime, endTime;
+
+        numThreads = threads;
+        batchSize = batch;
+        if (!initSession(path))
+            throw new IOException("Could not create session of " + path);
+        prepareBuffers();
+        samples = datasetCache.getTensors(new DatasetCache.Key(imageSizeY, imageSizeX,
+                imageDataType, imgMean, imgStd));
+        if (samples.count < batch)
+            throw new IllegalArgumentException("Data set is smaller than batch " + batch);
+
+        batches = samples.batches(batch);
+        session.run(batches[0], (ByteBuffer) outputBuffer.rewind());
+        for (int i = 0; i < inferences; i++) {
+            startTime = System.nanoTime();
+            session.run(batches[i % batches.length], (ByteBuffer) outputBuffer.rewind());
+            endTime = System.nanoTime();
+            histogram.record(endTime - startTime);
+            if (tracer.sampled(i))
+                tracer.record(StageTracer.Stage.INFERENCE, startTime, endTime, i);
+        }
+    }
+
+    /**
+     * Loads model of the job, runs warmup and measures inference over whole data set.
+     *
+     * @param job  job to run
+     * @param plan plan of the job
+     * @return result of the job, null when the job could not run or benchmark thread was interrupted
+     */
+    private ModelResult runJob(BenchmarkJob job, BenchmarkPlan plan) {
+        int traceJob = tracer.beginJob(job.toString());
+        long startTime = System.nanoTime();
+
+        try {
+            return measureJob(job, plan);
+        } finally {
+            tracer.record(StageTracer.Stage.JOB, startTime, System.nanoTime(), traceJob);
+        }
+    }
+
+    /**
+     * Body of runJob, stages are traced inside the JOB span.
+     */
+    private ModelResult measureJob(BenchmarkJob job, BenchmarkPlan plan) {
+        ModelResult modelResult = new ModelResult();
+        DatasetCache.Samples samples;
+        ByteBuffer[] batches;
+        MeasurementController controller;
+        String model = job.modelsDir + "/" + job.model;
+        long allocations, startTime, warmupNativeHeap;
+
+        currentDevice = job.device;
+        numThreads = job.numThreads;
+        batchSize = job.batchSize;
+
+        modelResult.round = job.round;
+        modelResult.batchSize = job.batchSize;
+        modelResult.delegate = job.device;
+        modelResult.numThreads = job.numThreads;
+        modelResult.modelName = job.getModelName();
+
+        startTime = System.nanoTime();
+        if (!initSession(plan.modelsBaseDir + model))
+            return null;
+        tracer.record(StageTracer.Stage.MODEL_LOAD, startTime, System.nanoTime(), -1);
+        modelResult.coldStart = sessionCache.getLastColdStart();
+        startTime = System.nanoTime();
+        prepareBuffers();
+        tracer.record(StageTracer.Stage.PREPARE_BUFFERS, startTime, System.nanoTime(), -1);
+        if (modelResult.coldStart != null)
+            modelResult.coldStart.prepareBuffersNanos = System.nanoTime() - startTime;
+        listener.onMessage("Model loaded: " + modelResult.modelName);
+
+        startTime = System.nanoTime();
+        samples = datasetCache.getTensors(new DatasetCache.Key(imageSizeY, imageSizeX,
+                imageDataType, imgMean, imgStd));
+        tracer.record(StageTracer.Stage.DATASET, startTime, System.nanoTime(), -1);
+        listener.onMessage("DataSet loaded");
+
+        if (samples.count < batchSize)
+            return null;
+        controller = MeasurementController.forPlan(plan, samples.count / batchSize);
+
+        allocations = inputBufferPool.getAllocations();
+        try {
+            beginTimedSection();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            batches = samples.batches(batchSize);
+            startTime = System.nanoTime();
+            warmUp(batches, controller);
+            tracer.record(StageTracer.Stage.WARMUP, startTime, System.nanoTime(), -1);
+            warmupNativeHeap = sessionCache.getMemoryProbe().nativeHeapUsed();
+            controller.start();
+            if (pipelined)
+                runPipelined(modelResult, samples, model, controller);
+            else
+                runSequential(modelResult, batches, controller);
+            if (plan.concurrent)
+                runConcurrent(modelResult, samples, plan, model);
+            if (plan.streaming && batchSize == 1)
+                runStreaming(modelResult, samples, plan, model);
+        } finally {
+            endTimedSection();
+        }
+
+        if (modelResult.coldStart != null) {
+            modelResult.coldStart.firstInferenceNanos = controller.getFirstNanos();
+            modelResult.coldStart.nativeHeapAfterWarmupBytes = warmupNativeHeap - modelResult.coldStart.nativeHeapBefore;
+            listener.onMessage("Cold start: " + modelResult.coldStart.getTotalNanos() / 1000000 + "ms");
+        }
+
+        modelResult.inputBufferPoolMisses = inputBufferPool.getAllocations() - allocations;
+        modelResult.warmupIterations = controller.getWarmupIterations();
+        modelResult.warmupLatency = controller.getWarmupSummary();
+        modelResult.iterations = controller.getIterations();
+        modelResult.stopReason = controller.getStopReason();
+        modelResult.medianCiWidth = controller.getMedianCiWidth();
+        listener.onMessage(modelResult.iterations + " inferences, warmup "
+                + modelResult.warmupIterations + ", " + modelResult.stopReason);
+        modelResult.finish();
+        return modelResult;
+    }
+
+    /**
+     * Runs unrecorded inferences over batches of the data set until controller ends warmup.
+     *
+     * @param batches    views of batches of the preprocessed data set
+     * @param controller controller of the job
+     */
+    private void warmUp(ByteBuffer[] batches, MeasurementController controller) {
+        long startTime;
+        boolean warmingUp = controller.isWarmingUp();
+
+        for (int batch = 0; warmingUp; batch = (batch + 1) % batches.length) {
+            startTime = System.nanoTime();
+            try {
+                session.run(batches[batch], (ByteBuffer) outputBuffer.rewind());
+            } catch (Exception e) {
+                listener.onMessage("Warmup failed: " + e);
+                return;
+            }
+            warmingUp = controller.recordWarmup(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Runs batches of the data set one after another on the current thread, starting over
+     * from the first batch until controller stops measurement. Batches are views of the
+     * data set passed to inference without copying.
+     *
+     * @param modelResult result to which inference times are recorded
+     * @param batches     views of batches of the preprocessed data set
+     * @param controller  controller of the job
+     */
+    private void runSequential(ModelResult modelResult, ByteBuffer[] batches, MeasurementController controller) {
+        long startTime, endTime, wallStartTime;
+        int batch, iteration = 0, images = 0;
+        boolean running = true, traced;
+
+        wallStartTime = System.nanoTime();
+        for (batch = 0; running; batch = (batch + 1) % batches.length, iteration++) {
+            traced = tracer.sampled(iteration);
+            startTime = System.nanoTime();
+
+            try {
+                session.run(batches[batch], (ByteBuffer) outputBuffer.rewind());
+                endTime = System.nanoTime();
+                modelResult.record(endTime - startTime);
+                running = controller.record(endTime - startTime);
+                images += batchSize;
+                if (traced)
+                    traceInference(modelResult, session, startTime, endTime, iteration);
+
+                postProcess(outputBuffer);
+                if (traced)
+                    tracer.record(StageTracer.Stage.POSTPROCESS, endTime, System.nanoTime(), iteration);
+            } catch (Exception e) {
+                listener.onMessage("Inference failed: " + e);
+                break;
+            }
+        }
+        modelResult.throughput = images * 1e9 / (System.nanoTime() - wallStartTime);
+    }
+
+    /**
+     * Records inference span together with the time measured inside the runtime, the native span
+     * ends with the inference span, so the gap before it is the overhead of the binding.
+     */
+    private void traceInference(ModelResult modelResult, InferenceSession session, long startTime, long endTime,
+                                int iteration) {
+        long nativeNanos = session.getLastNativeNanos();
+
+        tracer.record(StageTracer.Stage.INFERENCE, startTime, endTime, iteration);
+        if (nativeNanos >= 0) {
+            modelResult.recordNative(nativeNanos);
+            tracer.record(StageTracer.Stage.NATIVE_INFERENCE, endTime - nativeNanos, endTime, iteration);
+        }
+    }
+
+    /**
+     * Runs all batches of the data set in pipeline, next batch is copied into its input
+     * buffer and previous one is post-processed while current batch is inferring.
+     * Passes over the data set are repeated until controller stops measurement,
+     * inferences after the stop finish the pass but are not recorded.
+     * <p>
+     * Unlike runSequential, which infers zero-copy views of Samples.batches(), every batch is
+     * copied into the input buffer of its slot. The copy stands in for the preparation of a new
+     * frame, which the pipeline overlaps with inference. It is not timed, so recorded latencies
+     * stay comparable with sequential mode, while throughput includes it.
+     *
+     * @param modelResult result to which inference times are added
+     * @param samples     preprocessed data set
+     * @param model       name of the model used as a key of input buffers
+     * @param controller  controller of the job
+     */
+    private void runPipelined(final ModelResult modelResult, final DatasetCache.Samples samples, String model,
+                              final MeasurementController controller) {
+        ByteBuffer[] inputs = new ByteBuffer[PIPELINE_DEPTH];
+        int numBatches = samples.count / batchSize;
+        long wallTime = 0;
+        int passes = 0;
+        // inferences and post-processed batches so far, each counter is used only by its own thread
+        final int[] traceCounters = new int[2];
+
+        for (int slot = 0; slot < PIPELINE_DEPTH; slot++) {
+            inputs[slot] = inputBufferPool.get(model + "#" + slot, batchSize, samples.sampleSize * batchSize);
+            pipelineOutputBuffers[slot] = allocateOutput();
+        }
+
+        try {
+            do {
+                wallTime += pipelinedRunner.run(numBatches, inputs, pipelineOutputBuffers,
+                        (batch, input) -> {
+                            long startTime = System.nanoTime();
+                            samples.copyBatch(batch * batchSize, batchSize, input);
+                            if (tracer.sampled(batch))
+                                tracer.record(StageTracer.Stage.COPY, startTime, System.nanoTime(), batch);
+                        },
+                        (input, output) -> {
+                            int iteration = traceCounters[0]++;
+                            long startTime = System.nanoTime();
+                            session.run(input, (ByteBuffer) output.rewind());
+                            if (tracer.sampled(iteration))
+                                traceInference(modelResult, session, startTime, System.nanoTime(), iteration);
+                        },
+                        (slot, output) -> {
+                            int iteration = traceCounters[1]++;
+                            long startTime = System.nanoTime();
+                            postProcess(output);
+                            if (tracer.sampled(iteration))
+                                tracer.record(StageTracer.Stage.POSTPROCESS, startTime, System.nanoTime(), iteration);
+                        },
+                        nanos -> {
+                            if (!controller.isDone()) {
+                                modelResult.record(nanos);
+                                controller.record(nanos);
+                            }
+                        });
+                passes++;
+            } while (!controller.isDone());
+            modelResult.pipelined = true;
+            modelResult.throughput = (double) passes * numBatches * batchSize * 1e9 / wallTime;
+        } catch (Exception e) {
+            listener.onMessage("Pipelined inference failed: " + e);
+        }
+    }
+
+    /**
+     * Runs 1 to plan.maxWorkers new sessions of the current model in parallel
+     * and records throughput of every number of sessions.
+     *
+     * @param modelResult result to which throughput is added
+     * @param samples     preprocessed data set
+     * @param plan        plan of the job
+     * @param model       path of the model inside models directory
+     */
+    private void runConcurrent(ModelResult modelResult, DatasetCache.Samples samples, BenchmarkPlan plan, String model) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxWorkers = plan.maxWorkers > 0 ? plan.maxWorkers : cores;
+        int numBatches = samples.count / batchSize;
+        ConcurrentRunner runner = new ConcurrentRunner(Clock.SYSTEM);
+
+        modelResult.concurrency = new ArrayList<>();
+        for (int n = 1; n <= maxWorkers; n++) {
+            int threads = plan.workerThreads == BenchmarkPlan.WorkerThreads.SPLIT && currentDevice.isCpu()
+                    ? Math.max(1, cores / n) : numThreads;
+            List<SessionCache.Entry> entries = new ArrayList<>();
+            List<ConcurrentRunner.Worker> workers = new ArrayList<>();
+
+            try {
+                for (int i = 0; i < n; i++) {
+                    SessionCache.Entry entry = sessionCache.open(plan.modelsBaseDir + model,
+                            currentDevice, threads, batchSize);
+                    entries.add(entry);
+                    workers.add(createWorker(entry.session, samples.view(),
+                            inputBufferPool.get(model + "~" + i, batchSize, samples.sampleSize * batchSize)));
+                }
+                ConcurrentRunner.Level level = runner.run(workers, numBatches, batchSize,
+                        plan.concurrentDurationMs * 1000000L);
+                level.threadsPerWorker = threads;
+                modelResult.concurrency.add(level);
+                listener.onMessage(n + " interpreters: " + Math.round(level.throughput) + " images/s");
+            } catch (Exception e) {
+                listener.onMessage(n + " interpreters failed: " + e);
+                break;
+            } finally {
+                for (SessionCache.Entry entry : entries)
+                    entry.close();
+            }
+        }
+        modelResult.concurrencyKnee = ConcurrentRunner.findKnee(modelResult.concurrency, CONCURRENCY_MIN_GAIN);
+    }
+
+    /**
+     * Feeds frames arriving at plan.streamFps to the current session. Result of a frame
+     * is ready after its inference and post-processing.
+     *
+     * @param modelResult result to which the stream result is added
+     * @param samples     preprocessed data set replayed as frames
+     * @param plan        plan of the job
+     * @param model       name of the model used as a key of the input buffer
+     */
+    private void runStreaming(ModelResult modelResult, final DatasetCache.Samples samples, BenchmarkPlan plan,
+                              String model) {
+        ByteBuffer input = inputBufferPool.get(model + "@stream", 1, samples.sampleSize);
+        StreamingRunner.FrameSource source = plan.streamSource == BenchmarkPlan.StreamSource.SYNTHETIC
+                ? StreamingRunner.syntheticFrames(imageDataType)
+                : (frame, buffer) -> samples.copyBatch((int) (frame % samples.count), 1, buffer);
+
+        try {
+            modelResult.streaming = new StreamingRunner(Clock.SYSTEM).run(source, input, (frame, buffer) -> {
+                        long startTime = System.nanoTime();
+                        session.run(buffer, (ByteBuffer) outputBuffer.rewind());
+                        if (tracer.sampled(frame))
+                            tracer.record(StageTracer.Stage.INFERENCE, startTime, System.nanoTime(), (int) frame);
+                        postProcess(outputBuffer);
+                    }, plan.streamFps, plan.streamQueueDepth, plan.streamDurationMs * 1000000L,
+                    plan.streamWindowMs * 1000000L);
+            listener.onMessage(String.format("Stream %.0f fps: %.1f fps sustained, %.1f%% dropped, p99 %.1fms",
+                    plan.streamFps, modelResult.streaming.sustainedFps, modelResult.streaming.droppedRatio * 100,
+                    modelResult.streaming.latency.p99 / 1e6));
+        } catch (Exception e) {
+            listener.onMessage("Streaming failed: " + e);
+        }
+    }
+
+    private ConcurrentRunner.Worker createWorker(final InferenceSession session, final DatasetCache.Samples samples,
+                                                 final ByteBuffer input) {
+        final ByteBuffer output = allocateOutput();
+        final int batchSize = this.batchSize;
+
+        return new ConcurrentRunner.Worker() {
+            private int batch;
+
+            @Override
+            public void prepare(int batch) {
+                long startTime = System.nanoTime();
+                this.batch = batch;
+                samples.copyBatch(batch * batchSize, batchSize, input);
+                if (tracer.sampled(batch))
+                    tracer.record(StageTracer.Stage.COPY, startTime, System.nanoTime(), batch);
+            }
+
+            @Override
+            public void run() throws Exception {
+                long startTime = System.nanoTime();
+                session.run(input, (ByteBuffer) output.rewind());
+                if (tracer.sampled(batch))
+                    tracer.record(StageTracer.Stage.INFERENCE, startTime, System.nanoTime(), batch);
+            }
+        };
+    }
+
+    /**
+     * Finds K most probable labels of every sample of inference output.
+     * Uint8 output is compared raw, only the K winners are dequantized with quantization of the output tensor.
+     *
+     * @param buffer output probability of a batch
+     */
+    private void postProcess(ByteBuffer buffer) {
+        buffer.rewind();
+        if (outputInfo.getType() == TensorType.UINT8)
+            topKPostProcessor.processQuantized(buffer, batchSize, outputScale, outputZeroPoint);
+        else
+            topKPostProcessor.processFloat(buffer, batchSize);
+    }
+
+    /**
+     * Appends result to the local journal and asks uploader to send it.
+     * Network I/O happens only on the uploader thread.
+     *
+     * @param finalResult result of one device, models directory and batch size
+     * @param plan        plan of the run
+     * @param scheduler   scheduler whose order and canary readings are saved with the result, null without jobs
+     * @param results     list to which the result is added
+     */
+    private void saveFinalResult(FinalResult finalResult, BenchmarkPlan plan, JobScheduler scheduler,
+                                 List<FinalResult> results) {
+        finalResult.finish();
+        finalResult.order = plan.order;
+        finalResult.scheduleSeed = plan.scheduleSeed;
+        if (scheduler != null && !scheduler.getReadings().isEmpty())
+            finalResult.canaryReadings = new ArrayList<>(scheduler.getReadings());
+        finalResult.systemInfo = systemInfo;
+        finalResult.recordOverheadNanos = recordOverheadNanos;
+        finalResult.interpreterCache = sessionCache.getStats();
+        finalResult.recordedAt = System.currentTimeMillis();
+        results.add(finalResult);
+        try {
+            resultJournal.append(gson.toJson(finalResult));
+            resultUploader.requestUpload();
+        } catch (IOException e) {
+            listener.onMessage("Could not save result: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes session of the model for current device and batch size from the cache,
+     * cache creates the session when needed.
+     *
+     * @param model path of the model
+     * @return true when session is ready
+     */
+    private boolean initSession(String model) {
+        try {
+            session = sessionCache.get(model, currentDevice, numThreads, batchSize).session;
+        } catch (IOException | RuntimeException e) {
+            listener.onMessage("Could not create session of " + model + ": " + e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads image shape and data type of the input tensor and shape, data type and quantization
+     * of the output tensor. Allocates output buffer and topKPostProcessor.
+     * <p>
+     * Uint8 input is filled with raw pixel bytes (mean 0, std 1), float input is normalized
+     * to [-1, 1]. Uint8 output is dequantized with scale and zero point of the tensor,
+     * output without quantization parameters is taken as probability scaled to 255.
+     */
+    private void prepareBuffers() {
+        TensorInfo inputInfo = session.getInput();
+        int[] imageShape = inputInfo.getShape();
+        int[] probabilityShape;
+
+        imageSizeY = imageShape[1];
+        imageSizeX = imageShape[2];
+        imageDataType = inputInfo.getType();
+        outputInfo = session.getOutput();
+
+        if (imageDataType == TensorType.UINT8) {
+            imgMean = 0.0f;
+            imgStd = 1.0f;
+        } else {
+            imgMean = 127.5f;
+            imgStd = 127.5f;
+        }
+        outputScale = outputInfo.isQuantized() ? outputInfo.getScale() : 1.0f / 255.0f;
+        outputZeroPoint = outputInfo.getZeroPoint();
+
+        outputBuffer = allocateOutput();
+        probabilityShape = outputInfo.getShape();
+        topKPostProcessor = new TopKPostProcessor(MAX_RESULTS, probabilityShape[probabilityShape.length - 1], batchSize);
+    }
+
+    /**
+     * Allocates direct output buffer of the current session for current batch size
+     */
+    private ByteBuffer allocateOutput() {
+        int[] shape = outputInfo.getShape();
+        int sampleBytes = outputInfo.getByteSize() / Math.max(1, shape[0]);
+        return ByteBuffer.allocateDirect(sampleBytes * batchSize).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Single measurement of one model on one device with given thread count and batch size
+ */
+public class BenchmarkJob {
+    public final Device device;
+
+    public final int numThreads;
+
+    public final String modelsDir;
+
+    /**
+     * File name of the model with .tflite extension
+     */
+    public final String model;
+
+    public final int batchSize;
+
+    public final int round;
+
+    public BenchmarkJob(Device device, int numThreads, String modelsDir, String model,
+                        int batchSize, int round) {
+        this.device = device;
+        this.numThreads = numThreads;
+        this.modelsDir = modelsDir;
+        this.model = model;
+        this.batchSize = batchSize;
+        this.round = round;
+    }
+
+    public String getModelName() {
+        return model.replace(".tflite", "");
+    }
+
+    /**
+     * Returns key which is equal for jobs of the same group, i.e. jobs of one result which differ only
+     * in model and round
+     */
+    public String getGroupKey() {
+        return device + "(" + numThreads + ") " + modelsDir + " batch: " + batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return device + "(" + numThreads + ") " + modelsDir + "/" + getModelName() + " batch: " + batchSize + " round: " + round;
+    }
+}
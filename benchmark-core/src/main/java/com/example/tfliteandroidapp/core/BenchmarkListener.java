@@ -0,0 +1,18 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Receives progress messages of the engine
+ */
+public interface BenchmarkListener {
+    BenchmarkListener NONE = message -> {
+    };
+
+    void onMessage(String message);
+
+    /**
+     * Called when inferences start or stop being timed, listeners should avoid work
+     * competing with the benchmark thread while timing is true
+     */
+    default void onTimedSection(boolean timing) {
+    }
+}
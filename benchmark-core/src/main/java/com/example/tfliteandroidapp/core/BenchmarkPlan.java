@@ -0,0 +1,289 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Declarative description of a benchmark sweep, read from JSON.
+ * Fields which are missing in JSON keep their default values, which describe the full sweep.
+ */
+public class BenchmarkPlan {
+
+    /**
+     * Thread counts of interpreters running in parallel
+     */
+    public enum WorkerThreads {
+        /**
+         * Every interpreter uses thread count of the job
+         */
+        SHARED,
+        /**
+         * Cores are divided among CPU interpreters, every one gets at least one thread
+         */
+        SPLIT
+    }
+
+    public String name = "default";
+
+    /**
+     * Directory inside assets with one subdirectory per model family
+     */
+    public String modelsBaseDir = "models/converted_models_batch/";
+
+    public List<String> modelFamilies = new ArrayList<>(Arrays.asList("mobilenet_v1", "mobilenet_v2", "mobilenet_v3"));
+
+    /**
+     * Model is used only when its file name contains one of these substrings, empty means all models
+     */
+    public List<String> include = new ArrayList<>();
+
+    /**
+     * Model is skipped when its file name contains one of these substrings
+     */
+    public List<String> exclude = new ArrayList<>();
+
+    public List<Device> devices = new ArrayList<>(Arrays.asList(Device.values()));
+
+    /**
+     * Thread counts of CPU devices, empty means default thread count of the device
+     */
+    public List<Integer> threads = new ArrayList<>();
+
+    public List<Integer> batchSizes = new ArrayList<>(Arrays.asList(1, 2, 4, 8, 16, 32));
+
+    /**
+     * Only models whose file name contains one of these substrings run with batch size above 1
+     */
+    public List<String> batchedModels = new ArrayList<>(Arrays.asList("1.0_224"));
+
+    /**
+     * Number of unrecorded inferences before measurement of every job, -1 detects end of warmup
+     */
+    public int warmup = -1;
+
+    /**
+     * Maximum number of warmup inferences when end of warmup is detected
+     */
+    public int maxWarmup = 50;
+
+    /**
+     * Measurement of a job stops when 95% confidence interval of the median latency is narrower
+     * than this fraction of the median, 0 measures exactly one pass over the data set
+     */
+    public double targetMedianCi = 0.02;
+
+    public int minInferences = 20;
+
+    public int maxInferences = 1000;
+
+    /**
+     * Maximum duration of measurement of one job in milliseconds, 0 means unlimited
+     */
+    public long timeBudgetMs = 10000;
+
+    /**
+     * Measures every job also with 1 to maxWorkers interpreters of the model running in parallel
+     */
+    public boolean concurrent = false;
+
+    /**
+     * Highest number of interpreters running in parallel, 0 means number of cores
+     */
+    public int maxWorkers = 0;
+
+    public WorkerThreads workerThreads = WorkerThreads.SHARED;
+
+    /**
+     * Duration of measurement of one number of parallel interpreters in milliseconds
+     */
+    public long concurrentDurationMs = 3000;
+
+    /**
+     * Order in which jobs run
+     */
+    public enum JobOrder {
+        /**
+         * By device, thread count, model family, batch size, round and model
+         */
+        NESTED,
+        /**
+         * All jobs of a round in random order seeded by scheduleSeed, round after round
+         */
+        SHUFFLED
+    }
+
+    /**
+     * Source of frames of the streaming mode
+     */
+    public enum StreamSource {
+        /**
+         * Preprocessed images of the data set replayed in a loop
+         */
+        DATASET,
+        /**
+         * Generated frames which differ in every frame, no image is decoded
+         */
+        SYNTHETIC
+    }
+
+    public JobOrder order = JobOrder.NESTED;
+
+    public long scheduleSeed = 1;
+
+    /**
+     * Reference model inside modelsBaseDir, e.g. "mobilenet_v1/mobilenet_v1_1.0_224.tflite",
+     * re-measured every canaryEvery jobs to detect thermal drift, empty turns canary off
+     */
+    public String canaryModel = "";
+
+    public Device canaryDevice = Device.CPU;
+
+    public int canaryEvery = 5;
+
+    public int canaryInferences = 20;
+
+    /**
+     * Results of jobs are not accepted while median latency of the canary differs from
+     * its first reading by more than this fraction
+     */
+    public double canaryDriftThreshold = 0.1;
+
+    /**
+     * Pause before the canary is measured again after a drifted reading, in milliseconds
+     */
+    public long cooldownMs = 10000;
+
+    public int maxCooldowns = 6;
+
+    /**
+     * Number of times a job measured during drift runs again before its result is flagged
+     */
+    public int maxRequeues = 1;
+
+    /**
+     * Measures every job with batch size 1 also on a stream of frames arriving at streamFps
+     */
+    public boolean streaming = false;
+
+    public double streamFps = 30;
+
+    /**
+     * Maximum number of frames waiting for inference, the oldest one is dropped when a new frame arrives
+     */
+    public int streamQueueDepth = 1;
+
+    public StreamSource streamSource = StreamSource.DATASET;
+
+    /**
+     * Duration of the stream of one job in milliseconds
+     */
+    public long streamDurationMs = 60000;
+
+    /**
+     * Length of windows in which drift of streaming latency is reported, in milliseconds
+     */
+    public long streamWindowMs = 10000;
+
+    /**
+     * Instead of measuring jobs, runs cascadeSmallModel and escalates samples whose top-1 score
+     * is below a threshold to cascadeLargeModel, once for every threshold of cascadeThresholds
+     */
+    public boolean cascade = false;
+
+    /**
+     * Models of the cascade inside modelsBaseDir, e.g. "mobilenet_v1/mobilenet_v1_0.25_128.tflite"
+     */
+    public String cascadeSmallModel = "";
+
+    public String cascadeLargeModel = "";
+
+    public Device cascadeDevice = Device.CPU;
+
+    public List<Double> cascadeThresholds = new ArrayList<>(Arrays.asList(0.3, 0.5, 0.7, 0.9));
+
+    /**
+     * Passes over the data set of every model alone and of every threshold
+     */
+    public int cascadePasses = 3;
+
+    /**
+     * Instead of measuring jobs, tunes thread count and batch size of every model of the plan
+     * and saves the winners to the tuning profile
+     */
+    public boolean tune = false;
+
+    /**
+     * Runs every model tuned for its device once per round with the thread count and batch size
+     * saved in the tuning profile instead of the threads and batchSizes of the plan
+     */
+    public boolean useTuningProfile = false;
+
+    public TuningProfile.Goal tuningGoal = TuningProfile.Goal.LATENCY;
+
+    /**
+     * Thread counts searched on CPU devices, empty means 1, 2, 4 and number of cores
+     */
+    public List<Integer> tuneThreads = new ArrayList<>();
+
+    public List<Integer> tuneBatchSizes = new ArrayList<>(Arrays.asList(1, 2, 4, 8, 16, 32));
+
+    /**
+     * Maximum p99 latency of one batch of tuned configurations, 0 means no limit
+     */
+    public double latencySloMs = 100;
+
+    /**
+     * Inferences of every configuration in the first rung of successive halving
+     */
+    public int tuneInferences = 4;
+
+    /**
+     * Records durations of benchmark stages into a ring buffer and writes them as Chrome trace JSON
+     */
+    public boolean trace = false;
+
+    /**
+     * Stages of the measured loop are traced for every traceSampling-th batch, stages outside
+     * the loop are always traced
+     */
+    public int traceSampling = 1;
+
+    /**
+     * Number of rounds of every job, models of one round run before the next round starts
+     */
+    public int iterations = 1;
+
+    /**
+     * Number of images in the data set
+     */
+    public int samples = 32;
+
+    /**
+     * Seed of the data set shuffle
+     */
+    public long seed = 42;
+
+    /**
+     * Threads which preprocess images of the data set, 0 means number of cores, 1 preprocesses on the benchmark thread
+     */
+    public int preprocessWorkers = 1;
+
+    public static BenchmarkPlan fromJson(String json) {
+        BenchmarkPlan plan = new Gson().fromJson(json, BenchmarkPlan.class);
+        return plan != null ? plan : new BenchmarkPlan();
+    }
+
+    public String toJson() {
+        return new Gson().toJson(this);
+    }
+
+    /**
+     * Returns copy of the plan
+     */
+    public BenchmarkPlan copy() {
+        return fromJson(toJson());
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expands benchmark plan into ordered list of jobs and skips unsupported combinations.
+ * <p>
+ * Jobs are ordered by device, thread count, model family, batch size, round and model,
+ * so all models of one round run before the next round starts. Every model family is listed once.
+ * When a model catalog is set, unsupported combinations are found from metadata of the model files,
+ * otherwise from their names. When a tuning profile is set, models tuned for a device are left out of
+ * the sweep of the device and run after it once per round with their tuned thread count and batch size.
+ */
+public class BenchmarkPlanner {
+
+    /**
+     * Lists model files of a model family
+     */
+    public interface ModelLister {
+        List<String> list(String dir) throws IOException;
+    }
+
+    private final List<String> skipped = new ArrayList<>();
+
+    private ModelCatalog catalog;
+
+    private TuningProfile tuningProfile;
+
+    /**
+     * Sets catalog of model metadata, null falls back to model names.
+     */
+    public void setCatalog(ModelCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Sets profile whose tuned configurations replace the sweep of tuned models, null sweeps all models.
+     */
+    public void setTuningProfile(TuningProfile tuningProfile) {
+        this.tuningProfile = tuningProfile;
+    }
+
+    /**
+     * Returns jobs of the plan.
+     *
+     * @param plan   benchmark plan
+     * @param lister source of model file names
+     * @return ordered jobs
+     */
+    public List<BenchmarkJob> plan(BenchmarkPlan plan, ModelLister lister) throws IOException {
+        List<BenchmarkJob> jobs = new ArrayList<>();
+        Map<String, List<String>> families = new HashMap<>();
+        skipped.clear();
+
+        for (String modelsDir : plan.modelFamilies) {
+            List<String> models = new ArrayList<>();
+            for (String model : lister.list(plan.modelsBaseDir + modelsDir)) {
+                if (model.endsWith(".tflite") && selected(plan, model))
+                    models.add(model);
+            }
+            Collections.sort(models);
+            families.put(modelsDir, models);
+        }
+
+        for (Device device : plan.devices) {
+            for (int numThreads : threadCounts(plan, device)) {
+                for (String modelsDir : plan.modelFamilies) {
+                    List<String> models = families.get(modelsDir);
+
+                    for (int batchSize : plan.batchSizes) {
+                        List<String> supported = new ArrayList<>();
+                        for (String model : models) {
+                            if (getTuned(plan, device, model) != null)
+                                continue;
+                            ModelInfo info = catalog != null ? catalog.get(plan.modelsBaseDir + modelsDir + "/" + model) : null;
+                            String reason = unsupportedReason(plan, device, model, info, batchSize);
+                            if (reason == null)
+                                supported.add(model);
+                            else
+                                skipped.add(device + " " + modelsDir + "/" + model + " batch " + batchSize + ": " + reason);
+                        }
+
+                        for (int round = 0; round < plan.iterations; round++)
+                            for (String model : supported)
+                                jobs.add(new BenchmarkJob(device, numThreads, modelsDir, model, batchSize, round));
+                    }
+                }
+            }
+
+            for (String modelsDir : plan.modelFamilies) {
+                for (int round = 0; round < plan.iterations; round++) {
+                    for (String model : families.get(modelsDir)) {
+                        TuningProfile.Config tuned = getTuned(plan, device, model);
+                        if (tuned != null)
+                            jobs.add(new BenchmarkJob(device, tuned.numThreads, modelsDir, model, tuned.batchSize, round));
+                    }
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Returns tuned configuration of the model on the device, null when it is swept
+     */
+    private TuningProfile.Config getTuned(BenchmarkPlan plan, Device device, String model) {
+        if (tuningProfile == null)
+            return null;
+        return tuningProfile.getConfig(device, model.replace(".tflite", ""), plan.tuningGoal);
+    }
+
+    /**
+     * Returns descriptions of combinations skipped by the last plan() call
+     */
+    public List<String> getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns reason why model cannot run on the device with given batch size or null when it can.
+     * Model properties are inferred from the model name.
+     */
+    public static String unsupportedReason(BenchmarkPlan plan, Device device, String model, int batchSize) {
+        return unsupportedReason(plan, device, model, null, batchSize);
+    }
+
+    /**
+     * Returns reason why model cannot run on the device with given batch size or null when it can.
+     *
+     * @param info metadata of the model, null infers model properties from the model name
+     */
+    public static String unsupportedReason(BenchmarkPlan plan, Device device, String model, ModelInfo info,
+                                           int batchSize) {
+        if (info != null) {
+            if (!info.customOps.isEmpty())
+                return "custom ops " + info.customOps + " need a delegate which is not available";
+            if (device == Device.GPU && info.isQuantized())
+                return "GPU doesn't support quantized models";
+        } else {
+            if (device == Device.GPU && model.contains("quant"))
+                return "GPU doesn't support quantized models";
+            if (batchSize > 1 && model.contains("edgetpu"))
+                return "edgetpu models support only batch size 1";
+        }
+        if (batchSize > 1 && !containsAny(model, plan.batchedModels))
+            return "model is not allowed to use batching";
+        return null;
+    }
+
+    private static List<Integer> threadCounts(BenchmarkPlan plan, Device device) {
+        if (device.isCpu() && !plan.threads.isEmpty())
+            return plan.threads;
+        return Collections.singletonList(device.getDefaultThreads());
+    }
+
+    private static boolean selected(BenchmarkPlan plan, String model) {
+        return (plan.include.isEmpty() || containsAny(model, plan.include)) && !containsAny(model, plan.exclude);
+    }
+
+    private static boolean containsAny(String model, List<String> patterns) {
+        for (String pattern : patterns)
+            if (model.contains(pattern))
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a cascade of two classifiers over the samples of the data set: every sample goes to the small
+ * model first and is escalated to the large model only when the top-1 score of the small model is
+ * below a threshold.
+ * <p>
+ * Both models first classify every sample on their own. This pass warms them up, and its top-1
+ * classes of the large model are the reference of agreement. Latency of each model alone is then
+ * measured for the given number of passes. The cascade is then executed once per threshold, and
+ * latency of a sample covers inference and top-1 of the small model plus those of the large model
+ * when the sample was escalated. The result tells the latency saved against the large model
+ * for the agreement with it that is lost.
+ */
+public class CascadeRunner {
+
+    /**
+     * Model of the cascade
+     */
+    public interface Classifier {
+        /**
+         * Runs inference of the sample with given index and returns its top-1 class
+         */
+        int classify(int sample) throws Exception;
+
+        /**
+         * Returns score of the top-1 class of the last classified sample
+         */
+        float getScore();
+    }
+
+    /**
+     * Cascade with one threshold
+     */
+    public static class Level {
+        public double threshold;
+
+        /**
+         * Fraction of samples sent to the large model
+         */
+        public double escalationRate;
+
+        /**
+         * Fraction of samples whose top-1 class equals top-1 class of the large model
+         */
+        public double agreement;
+
+        /**
+         * Latency of one sample through the cascade
+         */
+        public LatencySummary latency;
+
+        /**
+         * Mean latency saved against the large model alone, as a fraction of it
+         */
+        public double latencySaved;
+    }
+
+    /**
+     * Result of the cascade of two models
+     */
+    public static class Result {
+        public String smallModel;
+
+        public String largeModel;
+
+        public int samples;
+
+        public int passes;
+
+        public LatencySummary smallLatency;
+
+        public LatencySummary largeLatency;
+
+        /**
+         * Agreement of the small model alone with the large model
+         */
+        public double smallAgreement;
+
+        public ArrayList<Level> levels = new ArrayList<>();
+    }
+
+    private final Clock clock;
+
+    public CascadeRunner(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Measures both models alone and the cascade with every threshold.
+     *
+     * @param small      model which classifies every sample
+     * @param large      model of escalated samples, its top-1 classes are the reference
+     * @param samples    number of samples
+     * @param passes     number of passes over the samples of every measurement
+     * @param thresholds samples with top-1 score of the small model below the threshold are escalated
+     * @throws InterruptedException when the thread was interrupted
+     * @throws Exception            first exception thrown by a classifier
+     */
+    public Result run(Classifier small, Classifier large, int samples, int passes, List<Double> thresholds)
+            throws Exception {
+        int[] reference = new int[samples];
+        int agreed = 0;
+        Result result = new Result();
+
+        result.samples = samples;
+        result.passes = passes;
+        for (int sample = 0; sample < samples; sample++) {
+            reference[sample] = large.classify(sample);
+            if (small.classify(sample) == reference[sample])
+                agreed++;
+        }
+        result.smallAgreement = samples > 0 ? (double) agreed / samples : 0;
+        result.smallLatency = measure(small, samples, passes);
+        result.largeLatency = measure(large, samples, passes);
+
+        for (double threshold : thresholds) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            long escalated = 0, agreements = 0, startTime;
+            Level level = new Level();
+
+            for (int pass = 0; pass < passes; pass++) {
+                checkInterrupted();
+                for (int sample = 0; sample < samples; sample++) {
+                    startTime = clock.nanoTime();
+                    int top1 = small.classify(sample);
+                    if (small.getScore() < threshold) {
+                        top1 = large.classify(sample);
+                        escalated++;
+                    }
+                    histogram.record(clock.nanoTime() - startTime);
+                    if (top1 == reference[sample])
+                        agreements++;
+                }
+            }
+            level.threshold = threshold;
+            level.latency = histogram.getSummary();
+            level.escalationRate = level.latency.count > 0 ? (double) escalated / level.latency.count : 0;
+            level.agreement = level.latency.count > 0 ? (double) agreements / level.latency.count : 0;
+            level.latencySaved = result.largeLatency.mean > 0 ? 1 - level.latency.mean / result.largeLatency.mean : 0;
+            result.levels.add(level);
+        }
+        return result;
+    }
+
+    private LatencySummary measure(Classifier classifier, int samples, int passes) throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long startTime;
+
+        for (int pass = 0; pass < passes; pass++) {
+            checkInterrupted();
+            for (int sample = 0; sample < samples; sample++) {
+                startTime = clock.nanoTime();
+                classifier.classify(sample);
+                histogram.record(clock.nanoTime() - startTime);
+            }
+        }
+        return histogram.getSummary();
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted())
+            throw new InterruptedException();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Source of monotonic time, replaced by a manual clock in tests
+ */
+public interface Clock {
+    Clock SYSTEM = System::nanoTime;
+
+    long nanoTime();
+
+    /**
+     * Waits until nanoTime() reaches the deadline or the thread is interrupted,
+     * manual clocks override it to jump to the deadline.
+     */
+    default void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+            LockSupport.parkNanos(remaining);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Phases and memory cost of the first use of a model on a device, i.e. of an interpreter
+ * cache miss. Times are in nanoseconds, memory deltas in bytes and may be negative when
+ * garbage collection runs in between.
+ */
+public class ColdStart {
+    /**
+     * Size of the memory mapped model
+     */
+    public long modelBytes;
+
+    /**
+     * FileUtil.loadMappedFile, 0 when mapping was already cached for another device
+     */
+    public long modelLoadNanos;
+
+    /**
+     * Creation of the GPU or NNAPI delegate
+     */
+    public long delegateInitNanos;
+
+    /**
+     * Creation of the session, e.g. new Interpreter(...) including delegation of the graph and kernel compilation
+     */
+    public long interpreterInitNanos;
+
+    /**
+     * Reading tensor shapes and allocating output and post-processing buffers
+     */
+    public long prepareBuffersNanos;
+
+    /**
+     * First inference, includes allocation of tensors
+     */
+    public long firstInferenceNanos;
+
+    /**
+     * Java heap added by loading the model and creating the interpreter
+     */
+    public long javaHeapBytes;
+
+    /**
+     * Native heap added by loading the model and creating the interpreter
+     */
+    public long nativeHeapBytes;
+
+    /**
+     * Native heap added from before the model was loaded until after warmup
+     */
+    public long nativeHeapAfterWarmupBytes;
+
+    /**
+     * Native heap allocated when the model started loading
+     */
+    transient long nativeHeapBefore;
+
+    public long getTotalNanos() {
+        return modelLoadNanos + delegateInitNanos + interpreterInitNanos + prepareBuffersNanos + firstInferenceNanos;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures aggregate throughput of several interpreters of the same model running
+ * in parallel, every one on its own thread.
+ * <p>
+ * All workers start together and run batches back to back until the duration elapses.
+ * Only the inference call is timed, latency of every inference is recorded into a histogram
+ * of its worker and histograms are merged after the run. When a worker fails, the others stop after
+ * their current inference and run() returns only when all of them returned, so the caller can
+ * close their sessions.
+ */
+public class ConcurrentRunner {
+
+    /**
+     * Inference of one worker with its own interpreter and buffers
+     */
+    public interface Worker {
+        /**
+         * Writes batch with given index into the input buffer of the worker
+         */
+        void prepare(int batch);
+
+        void run() throws Exception;
+    }
+
+    /**
+     * Result of one number of workers
+     */
+    public static class Level {
+        public int workers;
+
+        /**
+         * Thread count of the interpreter of every worker, -1 for interpreter default
+         */
+        public int threadsPerWorker;
+
+        public long inferences;
+
+        /**
+         * Images per second of all workers together
+         */
+        public double throughput;
+
+        /**
+         * Latency of single inferences of all workers
+         */
+        public LatencySummary latency;
+    }
+
+    private final Clock clock;
+
+    public ConcurrentRunner(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Runs all workers in parallel.
+     *
+     * @param workers       workers, one thread is started for every one of them
+     * @param numBatches    number of batches in the data set, workers cycle through them
+     * @param batchSize     images in one batch
+     * @param durationNanos duration of the run
+     * @return result of the run, threadsPerWorker is not filled
+     * @throws Exception first exception thrown by a worker, thrown after all workers stopped
+     */
+    public Level run(List<Worker> workers, final int numBatches, int batchSize, final long durationNanos) throws Exception {
+        final int n = workers.size();
+        final CountDownLatch ready = new CountDownLatch(n);
+        final CountDownLatch start = new CountDownLatch(1);
+        final LatencyHistogram[] histograms = new LatencyHistogram[n];
+        final long[] startTime = new long[1];
+        final AtomicBoolean stop = new AtomicBoolean();
+        List<Future<Long>> futures = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        LatencyHistogram latency = new LatencyHistogram();
+        long endTime = 0, inferences = 0;
+        Level level = new Level();
+
+        try {
+            for (int i = 0; i < n; i++) {
+                final Worker worker = workers.get(i);
+                final LatencyHistogram histogram = histograms[i] = new LatencyHistogram();
+                final int firstBatch = i % numBatches;
+                futures.add(executor.submit(() -> {
+                    int batch = firstBatch;
+                    long inferenceStart;
+
+                    try {
+                        try {
+                            worker.prepare(batch);
+                        } finally {
+                            ready.countDown();
+                        }
+                        start.await();
+                        while (true) {
+                            inferenceStart = clock.nanoTime();
+                            if (stop.get() || inferenceStart - startTime[0] >= durationNanos)
+                                return inferenceStart;
+                            worker.run();
+                            histogram.record(clock.nanoTime() - inferenceStart);
+                            batch = (batch + 1) % numBatches;
+                            worker.prepare(batch);
+                        }
+                    } catch (Exception e) {
+                        stop.set(true);
+                        throw e;
+                    }
+                }));
+            }
+
+            ready.await();
+            startTime[0] = clock.nanoTime();
+            start.countDown();
+            for (Future<Long> future : futures)
+                endTime = Math.max(endTime, future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        } finally {
+            stop.set(true);
+            start.countDown();
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+
+        for (LatencyHistogram histogram : histograms) {
+            latency.merge(histogram);
+            inferences += histogram.getCount();
+        }
+        level.workers = n;
+        level.inferences = inferences;
+        level.throughput = endTime > startTime[0] ? inferences * batchSize * 1e9 / (endTime - startTime[0]) : 0;
+        level.latency = latency.getSummary();
+        return level;
+    }
+
+    /**
+     * Waits until every worker returned, so no worker is inside inference when sessions are closed.
+     * Interruption is restored after the wait.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Returns number of workers after which adding a worker increases throughput by less
+     * than minGain of the single worker throughput, or the highest number when scaling never flattens.
+     *
+     * @param levels  results ordered by number of workers, starting with a single worker
+     * @param minGain fraction of the single worker throughput
+     */
+    public static int findKnee(List<Level> levels, double minGain) {
+        if (levels.isEmpty())
+            return 0;
+        double threshold = levels.get(0).throughput * minGain;
+        for (int i = 1; i < levels.size(); i++)
+            if (levels.get(i).throughput - levels.get(i - 1).throughput < threshold)
+                return levels.get(i - 1).workers;
+        return levels.get(levels.size() - 1).workers;
+    }
+}
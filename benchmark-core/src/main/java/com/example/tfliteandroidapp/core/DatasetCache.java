@@ -0,0 +1,348 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Images of the data set decoded once per sweep together with their preprocessed tensors.
+ * <p>
+ * Tensors are keyed by input signature (shape, data type, mean and std), so every model with
+ * the same input signature reuses them. Tensors of one signature are stored one after another
+ * in a single direct, native ordered buffer, so a batch is one contiguous range. Tensors are
+ * evicted in LRU order when they exceed the memory budget. Images are shuffled with a seeded
+ * Random, so the order is the same in every run.
+ * Images are center-cropped, resized with nearest neighbor sampling and normalized by a compiled
+ * ImagePreprocessor of every source image size. Images of one signature are preprocessed
+ * in parallel by a BatchPreprocessor, on the calling thread unless one with more workers is set.
+ * <p>
+ * When a matching DatasetPack is set, tensors of the signatures it contains are served from the pack
+ * and images are decoded only for the signatures it is missing.
+ */
+public class DatasetCache {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Preprocessed tensors of all images stored in a single buffer
+     */
+    public static final class Samples {
+        final ByteBuffer data;
+
+        public final int sampleSize;
+
+        public final int count;
+
+        Samples(ByteBuffer data, int sampleSize, int count) {
+            this.data = data;
+            this.sampleSize = sampleSize;
+            this.count = count;
+        }
+
+        /**
+         * Copies batchSize consecutive samples starting from sample first into the
+         * beginning of the output buffer. Does not allocate.
+         *
+         * @param first     index of the first sample
+         * @param batchSize number of samples
+         * @param output    buffer to fill, it is rewound after the copy
+         */
+        public void copyBatch(int first, int batchSize, ByteBuffer output) {
+            data.limit((first + batchSize) * sampleSize);
+            data.position(first * sampleSize);
+            output.clear();
+            output.put(data);
+            output.rewind();
+            data.clear();
+        }
+
+        /**
+         * Returns views of consecutive batches of batchSize samples, a view shares memory
+         * of the data set, so a batch is passed to inference without copying. Samples which
+         * do not fill the last batch are left out.
+         *
+         * @param batchSize number of samples of every batch
+         * @return direct native ordered buffers, one per batch
+         */
+        public ByteBuffer[] batches(int batchSize) {
+            ByteBuffer[] batches = new ByteBuffer[count / batchSize];
+            ByteBuffer source = data.duplicate();
+
+            for (int i = 0; i < batches.length; i++) {
+                source.limit((i + 1) * batchSize * sampleSize);
+                source.position(i * batchSize * sampleSize);
+                batches[i] = source.slice().order(ByteOrder.nativeOrder());
+            }
+            return batches;
+        }
+
+        /**
+         * Returns samples sharing the same data with their own position, copyBatch of one
+         * instance must be called only from one thread at a time.
+         */
+        public Samples view() {
+            return new Samples(data.duplicate(), sampleSize, count);
+        }
+    }
+
+    /**
+     * Input signature of a model
+     */
+    public static final class Key {
+        final int height;
+        final int width;
+        final TensorType dataType;
+        final float mean;
+        final float std;
+
+        public Key(int height, int width, TensorType dataType, float mean, float std) {
+            this.height = height;
+            this.width = width;
+            this.dataType = dataType;
+            this.mean = mean;
+            this.std = std;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return height == key.height && width == key.width && dataType == key.dataType
+                    && Float.compare(mean, key.mean) == 0 && Float.compare(std, key.std) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new Object[]{height, width, dataType, mean, std});
+        }
+
+        @Override
+        public String toString() {
+            return height + "x" + width + " " + dataType + " mean: " + mean + " std: " + std;
+        }
+    }
+
+    private final ImageSource source;
+
+    private final int numSamples;
+
+    private final long seed;
+
+    private final long memoryBudget;
+
+    private long usedMemory;
+
+    private List<ImageSource.Image> images;
+
+    /**
+     * Compiled preprocessing plans of the last input signature keyed by source image size
+     */
+    private final Map<Long, ImagePreprocessor> imagePreprocessors = new HashMap<>();
+
+    private final LinkedHashMap<Key, Samples> tensors = new LinkedHashMap<>(16, 0.75f, true);
+
+    private DatasetPack pack;
+
+    private StageTracer tracer = StageTracer.DISABLED;
+
+    private BenchmarkListener listener = BenchmarkListener.NONE;
+
+    private BatchPreprocessor batchPreprocessor = new BatchPreprocessor(1);
+
+    private long hits, misses, evictions, packHits;
+
+    /**
+     * @param source       images of the data set
+     * @param numSamples   number of images to take from the source
+     * @param seed         seed of the shuffle
+     * @param memoryBudget maximum number of bytes of cached tensors
+     */
+    public DatasetCache(ImageSource source, int numSamples, long seed, long memoryBudget) {
+        this.source = source;
+        this.numSamples = numSamples;
+        this.seed = seed;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Serves tensors from the pack, the pack is ignored when it was built
+     * from a different number of samples or seed.
+     *
+     * @param pack mapped pack or null
+     */
+    public void setPack(DatasetPack pack) {
+        this.pack = pack != null && pack.matches(numSamples, seed) ? pack : null;
+    }
+
+    /**
+     * Sets tracer which records decoding and preprocessing of every image.
+     */
+    public void setTracer(StageTracer tracer) {
+        this.tracer = tracer;
+        batchPreprocessor.setTracer(tracer);
+    }
+
+    /**
+     * Sets listener which is told when images could not be listed.
+     */
+    public void setListener(BenchmarkListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets preprocessor which splits images of a signature across its workers, the caller shuts it down.
+     */
+    public void setBatchPreprocessor(BatchPreprocessor batchPreprocessor) {
+        this.batchPreprocessor = batchPreprocessor;
+        batchPreprocessor.setTracer(tracer);
+    }
+
+    /**
+     * Returns images of the data set, decodes them on first call.
+     *
+     * @return list of images, empty in case of an exception
+     */
+    public List<ImageSource.Image> getImages() {
+        if (images != null)
+            return images;
+
+        images = new ArrayList<>();
+        try {
+            ArrayList<String> list = new ArrayList<>(source.list());
+            Collections.sort(list);
+            Collections.shuffle(list, new Random(seed));
+
+            for (String imageFile : list) {
+                long startTime = System.nanoTime();
+                ImageSource.Image image = source.decode(imageFile);
+                tracer.record(StageTracer.Stage.DECODE, startTime, System.nanoTime(), images.size());
+                if (image != null)
+                    images.add(image);
+                if (images.size() == numSamples) break;
+            }
+        } catch (IOException e) {
+            listener.onMessage("Could not list images: " + e.getMessage());
+        }
+        return images;
+    }
+
+    /**
+     * Returns preprocessed tensors of all images for given input signature.
+     * Tensors are computed only when they are not cached.
+     *
+     * @param key input signature
+     * @return tensors of all images, in the order of getImages()
+     */
+    public Samples getTensors(Key key) {
+        Samples cached = tensors.get(key);
+        if (cached != null) {
+            hits++;
+            return cached;
+        }
+        if (pack != null && (cached = pack.getSamples(key)) != null) {
+            packHits++;
+            return cached;
+        }
+
+        misses++;
+        List<ImageSource.Image> images = getImages();
+        int sampleSize = key.height * key.width * 3 * key.dataType.byteSize();
+        ByteBuffer data = ByteBuffer.allocateDirect(sampleSize * images.size()).order(ByteOrder.nativeOrder());
+        ImagePreprocessor[] preprocessors = new ImagePreprocessor[images.size()];
+        int[][] pixels = new int[images.size()][];
+        for (int i = 0; i < images.size(); i++) {
+            preprocessors[i] = getPreprocessor(key, images.get(i));
+            pixels[i] = images.get(i).pixels;
+        }
+        batchPreprocessor.process(preprocessors, pixels, data, sampleSize);
+
+        Samples result = new Samples(data, sampleSize, images.size());
+        usedMemory += data.capacity();
+        tensors.put(key, result);
+        evict(key);
+        return result;
+    }
+
+    /**
+     * Writes tensors of the pack together with tensors computed since, when any were computed.
+     * Tensors evicted before the call are not written.
+     *
+     * @param file pack file
+     * @return true when the pack was written
+     */
+    public boolean writePack(File file) throws IOException {
+        Map<Key, Samples> all = new LinkedHashMap<>();
+
+        if (tensors.isEmpty())
+            return false;
+        if (pack != null)
+            for (Key key : pack.getKeys())
+                all.put(key, pack.getSamples(key));
+        all.putAll(tensors);
+        DatasetPack.write(file, numSamples, seed, all);
+        return true;
+    }
+
+    /**
+     * Drops decoded images and tensors, next call decodes images again.
+     */
+    public void clear() {
+        images = null;
+        imagePreprocessors.clear();
+        tensors.clear();
+        usedMemory = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Dataset cache hits: " + hits + " pack hits: " + packHits + " misses: " + misses
+                + " evictions: " + evictions + " memory: " + usedMemory / 1024 + "KB\n" + batchPreprocessor;
+    }
+
+    /**
+     * Returns compiled preprocessing plan of the image for given input signature.
+     */
+    private ImagePreprocessor getPreprocessor(Key key, ImageSource.Image image) {
+        ImagePreprocessor.OutputType outputType = key.dataType == TensorType.UINT8
+                ? ImagePreprocessor.OutputType.UINT8 : ImagePreprocessor.OutputType.FLOAT32;
+        Long size = ((long) image.width << 32) | image.height;
+        ImagePreprocessor imagePreprocessor = imagePreprocessors.get(size);
+
+        if (imagePreprocessor == null || !imagePreprocessor.matches(image.width, image.height, key.height, key.width,
+                outputType, key.mean, key.std, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR)) {
+            imagePreprocessor = new ImagePreprocessor(image.width, image.height, key.height, key.width,
+                    outputType, key.mean, key.std, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+            imagePreprocessors.put(size, imagePreprocessor);
+        }
+        return imagePreprocessor;
+    }
+
+    /**
+     * Removes least recently used tensors until cache fits into the budget.
+     * Most recent entry is never removed.
+     */
+    private void evict(Key current) {
+        Iterator<Map.Entry<Key, Samples>> iterator = tensors.entrySet().iterator();
+        while (usedMemory > memoryBudget && iterator.hasNext()) {
+            Map.Entry<Key, Samples> eldest = iterator.next();
+            if (eldest.getKey().equals(current))
+                continue;
+            usedMemory -= eldest.getValue().data.capacity();
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
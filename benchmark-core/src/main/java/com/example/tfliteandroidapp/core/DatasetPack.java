@@ -0,0 +1,169 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Preprocessed tensors of a data set stored in one uncompressed file, read through a memory mapping.
+ * <p>
+ * The file starts with a little endian header: magic "TFDP", version, number of samples, number of
+ * entries and seed of the shuffle, followed by one index entry per input signature (height, width,
+ * TensorType ordinal, mean, std, sample size, sample count and offset of the data). Data of every
+ * entry starts at an offset aligned to 64 bytes and holds the samples one after another,
+ * so batches are slices of the mapping and no image is decoded.
+ */
+public final class DatasetPack {
+
+    static final int MAGIC = 0x50444654;
+    static final int VERSION = 1;
+    private static final int ALIGNMENT = 64;
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 40;
+
+    private final int numSamples;
+
+    private final long seed;
+
+    private final Map<DatasetCache.Key, DatasetCache.Samples> entries;
+
+    private DatasetPack(int numSamples, long seed, Map<DatasetCache.Key, DatasetCache.Samples> entries) {
+        this.numSamples = numSamples;
+        this.seed = seed;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps pack file read only.
+     *
+     * @throws IOException when the file could not be mapped or is not a valid pack
+     */
+    public static DatasetPack map(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads index of the pack, samples are views of the buffer.
+     *
+     * @param buffer whole pack, e.g. a mapped file
+     * @throws IOException when the buffer is not a valid pack
+     */
+    public static DatasetPack read(ByteBuffer buffer) throws IOException {
+        ByteBuffer header = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        Map<DatasetCache.Key, DatasetCache.Samples> entries = new LinkedHashMap<>();
+        int numSamples, numEntries;
+        long seed;
+
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN)
+            throw new IOException("Pack data is little endian");
+        header.clear();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)
+            throw new IOException("Not a dataset pack");
+        if (header.getInt() != VERSION)
+            throw new IOException("Unsupported dataset pack version");
+        numSamples = header.getInt();
+        numEntries = header.getInt();
+        seed = header.getLong();
+        if (numEntries < 0 || header.remaining() < (long) numEntries * ENTRY_SIZE)
+            throw new IOException("Truncated dataset pack index");
+
+        for (int i = 0; i < numEntries; i++) {
+            int height = header.getInt(), width = header.getInt(), type = header.getInt();
+            float mean = header.getFloat(), std = header.getFloat();
+            int sampleSize = header.getInt(), count = header.getInt();
+            header.getInt();
+            long offset = header.getLong();
+
+            if (type < 0 || type >= TensorType.values().length || sampleSize <= 0 || count < 0
+                    || offset < 0 || offset + (long) sampleSize * count > buffer.capacity())
+                throw new IOException("Invalid dataset pack entry " + i);
+
+            ByteBuffer data = buffer.duplicate();
+            data.limit((int) offset + sampleSize * count);
+            data.position((int) offset);
+            entries.put(new DatasetCache.Key(height, width, TensorType.values()[type], mean, std),
+                    new DatasetCache.Samples(data.slice().order(ByteOrder.nativeOrder()), sampleSize, count));
+        }
+        return new DatasetPack(numSamples, seed, entries);
+    }
+
+    /**
+     * Writes pack to a temporary file and renames it, so a mapped previous pack stays valid.
+     *
+     * @param file       pack file
+     * @param numSamples number of samples the data set was built with
+     * @param seed       seed of the shuffle of the data set
+     * @param tensors    samples of every input signature, in the order of the data set
+     */
+    public static void write(File file, int numSamples, long seed,
+                             Map<DatasetCache.Key, DatasetCache.Samples> tensors) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + tensors.size() * ENTRY_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long offset = align(header.capacity());
+
+        header.putInt(MAGIC).putInt(VERSION).putInt(numSamples).putInt(tensors.size()).putLong(seed);
+        for (Map.Entry<DatasetCache.Key, DatasetCache.Samples> entry : tensors.entrySet()) {
+            DatasetCache.Key key = entry.getKey();
+            DatasetCache.Samples samples = entry.getValue();
+            header.putInt(key.height).putInt(key.width).putInt(key.dataType.ordinal())
+                    .putFloat(key.mean).putFloat(key.std)
+                    .putInt(samples.sampleSize).putInt(samples.count).putInt(0).putLong(offset);
+            offset = align(offset + (long) samples.sampleSize * samples.count);
+        }
+        header.flip();
+
+        try (FileOutputStream output = new FileOutputStream(tmp)) {
+            FileChannel channel = output.getChannel();
+            writeFully(channel, header);
+            for (DatasetCache.Samples samples : tensors.values()) {
+                channel.position(align(channel.position()));
+                ByteBuffer data = samples.data.duplicate();
+                data.clear();
+                data.limit(samples.sampleSize * samples.count);
+                writeFully(channel, data);
+            }
+            output.getFD().sync();
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Could not replace " + file);
+    }
+
+    /**
+     * Returns true when the pack was built from the same number of samples shuffled with the same seed
+     */
+    public boolean matches(int numSamples, long seed) {
+        return this.numSamples == numSamples && this.seed == seed;
+    }
+
+    /**
+     * Returns samples of the input signature, null when the pack does not contain it
+     */
+    public DatasetCache.Samples getSamples(DatasetCache.Key key) {
+        return entries.get(key);
+    }
+
+    public Set<DatasetCache.Key> getKeys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Device used for executing inference
+ */
+public enum Device {
+    CPU(1),
+    NNAPI(-1),
+    GPU(-1),
+    CPU4(4);
+
+    private final int defaultThreads;
+
+    Device(int defaultThreads) {
+        this.defaultThreads = defaultThreads;
+    }
+
+    /**
+     * Thread count used when plan does not specify one, -1 leaves the interpreter default
+     */
+    public int getDefaultThreads() {
+        return defaultThreads;
+    }
+
+    public boolean isCpu() {
+        return this == CPU || this == CPU4;
+    }
+}
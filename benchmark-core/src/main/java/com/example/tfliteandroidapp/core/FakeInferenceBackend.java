@@ -0,0 +1,138 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Backend without a runtime for headless runs of the benchmark on a plain JVM.
+ * <p>
+ * Every model has the same image input and class output. Inference busy-waits for base latency
+ * plus latency per image of the batch plus seeded jitter, so measured latency scales with batch size.
+ * Output depends only on the input: the class chosen by the sum of bytes of the sample
+ * gets score 1, all other classes 0. Uint8 tensors are quantized like quantized mobilenet,
+ * input with scale 1/128 and zero point 128, output with scale 1/256 and zero point 0.
+ */
+public class FakeInferenceBackend implements InferenceBackend {
+
+    private final int height, width;
+
+    private final TensorType type;
+
+    private final int numClasses;
+
+    private final long baseNanos, perImageNanos, jitterNanos;
+
+    private final long seed;
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    /**
+     * @param height        height of input image
+     * @param width         width of input image
+     * @param type          type of input and output tensor
+     * @param numClasses    size of output of one sample
+     * @param baseNanos     latency of every inference
+     * @param perImageNanos latency added by every image of the batch
+     * @param jitterNanos   upper bound of random latency added to every inference
+     * @param seed          seed of the jitter, every session starts with the same sequence
+     */
+    public FakeInferenceBackend(int height, int width, TensorType type, int numClasses,
+                                long baseNanos, long perImageNanos, long jitterNanos, long seed) {
+        this.height = height;
+        this.width = width;
+        this.type = type;
+        this.numClasses = numClasses;
+        this.baseNanos = baseNanos;
+        this.perImageNanos = perImageNanos;
+        this.jitterNanos = jitterNanos;
+        this.seed = seed;
+    }
+
+    @Override
+    public InferenceSession open(String model, Device device, int numThreads, ColdStart coldStart) {
+        opened.incrementAndGet();
+        return new Session();
+    }
+
+    @Override
+    public void clear() {
+    }
+
+    /**
+     * Returns number of sessions opened so far
+     */
+    public int getOpened() {
+        return opened.get();
+    }
+
+    private class Session implements InferenceSession {
+        private final Random random = new Random(seed);
+
+        private int batchSize = 1;
+
+        private boolean closed;
+
+        private long lastNanos = -1;
+
+        @Override
+        public TensorInfo getInput() {
+            return type == TensorType.UINT8
+                    ? new TensorInfo(new int[]{batchSize, height, width, 3}, type, 1.0f / 128, 128)
+                    : new TensorInfo(new int[]{batchSize, height, width, 3}, type);
+        }
+
+        @Override
+        public TensorInfo getOutput() {
+            return type == TensorType.UINT8
+                    ? new TensorInfo(new int[]{batchSize, numClasses}, type, 1.0f / 256, 0)
+                    : new TensorInfo(new int[]{batchSize, numClasses}, type);
+        }
+
+        @Override
+        public void resize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void run(ByteBuffer input, ByteBuffer output) {
+            int sampleSize = height * width * 3 * type.byteSize();
+            long startTime = System.nanoTime();
+            long deadline = startTime + baseNanos + perImageNanos * batchSize
+                    + (jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0);
+
+            if (closed)
+                throw new IllegalStateException("Session is closed");
+            if (input.capacity() < sampleSize * batchSize)
+                throw new IllegalArgumentException("Input has " + input.capacity() + " bytes, expected "
+                        + sampleSize * batchSize);
+
+            for (int sample = 0; sample < batchSize; sample++) {
+                int sum = 0;
+                for (int i = sample * sampleSize; i < (sample + 1) * sampleSize; i++)
+                    sum += input.get(i) & 0xff;
+                int label = sum % numClasses;
+                for (int c = 0; c < numClasses; c++) {
+                    if (type == TensorType.UINT8)
+                        output.put((byte) (c == label ? 255 : 0));
+                    else
+                        output.putFloat(c == label ? 1.0f : 0.0f);
+                }
+            }
+
+            while (System.nanoTime() < deadline)
+                Thread.yield();
+            lastNanos = System.nanoTime() - startTime;
+        }
+
+        @Override
+        public long getLastNativeNanos() {
+            return lastNanos;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
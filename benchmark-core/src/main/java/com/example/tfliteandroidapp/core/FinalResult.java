@@ -0,0 +1,62 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class FinalResult {
+    public SystemInfo systemInfo;
+
+    public ArrayList<ModelResult> modelResults = new ArrayList<>();
+
+    /**
+     * Latency statistics of every model merged over all rounds, filled by finish()
+     */
+    public HashMap<String, LatencySummary> latencyByModel = new HashMap<>();
+
+    public SessionCache.Stats interpreterCache;
+
+    public BenchmarkPlan.JobOrder order;
+
+    public long scheduleSeed;
+
+    /**
+     * Canary readings of the run up to this result, null without canary
+     */
+    public ArrayList<JobScheduler.CanaryReading> canaryReadings;
+
+    /**
+     * Result of the cascade mode, null in other modes
+     */
+    public CascadeRunner.Result cascade;
+
+    /**
+     * Average cost of recording one inference time in nanoseconds
+     */
+    public double recordOverheadNanos;
+
+    /**
+     * Time when the result was saved in the journal, in milliseconds since epoch.
+     * Firestore sink adds server side createdAt timestamp.
+     */
+    public long recordedAt;
+
+    private transient HashMap<String, LatencyHistogram> histograms = new HashMap<>();
+
+    public void add(ModelResult modelResult) {
+        modelResults.add(modelResult);
+
+        LatencyHistogram histogram = histograms.get(modelResult.modelName);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(modelResult.modelName, histogram);
+        }
+        histogram.merge(modelResult.histogram());
+    }
+
+    public void finish() {
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet())
+            latencyByModel.put(entry.getKey(), entry.getValue().getSummary());
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compiled center crop, resize and normalization of ARGB pixels into an input tensor.
+ * <p>
+ * Produces the same output as ImageProcessor with ResizeWithCropOrPadOp(cropSize, cropSize),
+ * ResizeOp and NormalizeOp, where cropSize is the shorter side of the source image.
+ * Sampling positions and normalization table are computed once when the plan is compiled,
+ * processing an image is then a single pass which does not allocate. A compiled plan can be used
+ * by several threads at once, e.g. for row tiles of one image written into disjoint output ranges.
+ */
+public class ImagePreprocessor {
+
+    public enum Sampling {
+        NEAREST_NEIGHBOR,
+        BILINEAR
+    }
+
+    public enum OutputType {
+        FLOAT32,
+        UINT8
+    }
+
+    private final int sourceWidth, sourceHeight;
+
+    private final int targetHeight, targetWidth;
+
+    private final OutputType outputType;
+
+    private final float mean, std;
+
+    private final Sampling sampling;
+
+    /**
+     * Source column and row of every output pixel, for bilinear sampling the left/top neighbour
+     */
+    private final int[] columns, rows;
+
+    /**
+     * Right/bottom neighbour and its weight, used only by bilinear sampling
+     */
+    private final int[] nextColumns, nextRows;
+
+    private final float[] columnWeights, rowWeights;
+
+    /**
+     * Normalized value of every possible channel value
+     */
+    private final float[] normalized = new float[256];
+
+    /**
+     * Normalized value of every possible channel value cast to uint8, identity for mean 0 and std 1
+     */
+    private final byte[] quantized = new byte[256];
+
+    /**
+     * Bytes of one output row of uint8 tensor of every thread, written to the output buffer at once
+     */
+    private final ThreadLocal<byte[]> rowBytes;
+
+    /**
+     * Compiles preprocessing plan.
+     *
+     * @param sourceWidth  width of source images
+     * @param sourceHeight height of source images
+     * @param targetHeight height of input tensor
+     * @param targetWidth  width of input tensor
+     * @param outputType   data type of input tensor
+     * @param mean         mean subtracted from every channel
+     * @param std          standard deviation which divides every channel
+     * @param sampling     resize method
+     */
+    public ImagePreprocessor(int sourceWidth, int sourceHeight, int targetHeight, int targetWidth,
+                             OutputType outputType, float mean, float std, Sampling sampling) {
+        int cropSize = Math.min(sourceWidth, sourceHeight);
+        int left = (sourceWidth - cropSize) / 2;
+        int top = (sourceHeight - cropSize) / 2;
+        int i;
+
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.targetHeight = targetHeight;
+        this.targetWidth = targetWidth;
+        this.outputType = outputType;
+        this.mean = mean;
+        this.std = std;
+        this.sampling = sampling;
+
+        columns = new int[targetWidth];
+        rows = new int[targetHeight];
+        if (sampling == Sampling.BILINEAR) {
+            nextColumns = new int[targetWidth];
+            nextRows = new int[targetHeight];
+            columnWeights = new float[targetWidth];
+            rowWeights = new float[targetHeight];
+            compileBilinear(cropSize, targetWidth, left, columns, nextColumns, columnWeights);
+            compileBilinear(cropSize, targetHeight, top, rows, nextRows, rowWeights);
+        } else {
+            nextColumns = nextRows = null;
+            columnWeights = rowWeights = null;
+            compileNearest(cropSize, targetWidth, left, columns);
+            compileNearest(cropSize, targetHeight, top, rows);
+        }
+        for (i = 0; i < targetHeight; i++)
+            rows[i] *= sourceWidth;
+        if (nextRows != null)
+            for (i = 0; i < targetHeight; i++)
+                nextRows[i] *= sourceWidth;
+
+        for (i = 0; i < normalized.length; i++) {
+            normalized[i] = (i - mean) / std;
+            quantized[i] = (byte) toUint8(normalized[i]);
+        }
+        rowBytes = outputType == OutputType.UINT8 ? ThreadLocal.withInitial(() -> new byte[targetWidth * 3]) : null;
+    }
+
+    /**
+     * Returns true when plan was compiled for given source size and target signature
+     */
+    public boolean matches(int sourceWidth, int sourceHeight, int targetHeight, int targetWidth,
+                           OutputType outputType, float mean, float std, Sampling sampling) {
+        return this.sourceWidth == sourceWidth && this.sourceHeight == sourceHeight
+                && this.targetHeight == targetHeight && this.targetWidth == targetWidth
+                && this.outputType == outputType && Float.compare(this.mean, mean) == 0
+                && Float.compare(this.std, std) == 0 && this.sampling == sampling;
+    }
+
+    /**
+     * Size of produced tensor in bytes
+     */
+    public int getOutputSize() {
+        return targetHeight * targetWidth * 3 * (outputType == OutputType.FLOAT32 ? 4 : 1);
+    }
+
+    /**
+     * Writes RGB tensor of the image at current position of the output buffer.
+     *
+     * @param pixels ARGB pixels of the source image, row by row
+     * @param output buffer of the input tensor, its position is advanced by getOutputSize()
+     */
+    public void process(int[] pixels, ByteBuffer output) {
+        processRows(pixels, output, 0, targetHeight);
+    }
+
+    /**
+     * Writes rows firstRow to endRow - 1 of the tensor at current position of the output buffer.
+     *
+     * @param pixels   ARGB pixels of the source image, row by row
+     * @param output   buffer positioned at the first byte of firstRow, position is advanced past endRow - 1
+     * @param firstRow first output row
+     * @param endRow   output row after the last written one
+     */
+    public void processRows(int[] pixels, ByteBuffer output, int firstRow, int endRow) {
+        if (sampling == Sampling.BILINEAR)
+            processBilinear(pixels, output, firstRow, endRow);
+        else if (outputType == OutputType.UINT8)
+            processNearestUint8(pixels, output, firstRow, endRow);
+        else
+            processNearest(pixels, output, firstRow, endRow);
+    }
+
+    /**
+     * Returns height of produced tensor
+     */
+    public int getTargetHeight() {
+        return targetHeight;
+    }
+
+    private void processNearest(int[] pixels, ByteBuffer output, int firstRow, int endRow) {
+        int x, y, row, pixel;
+
+        for (y = firstRow; y < endRow; y++) {
+            row = rows[y];
+            for (x = 0; x < targetWidth; x++) {
+                pixel = pixels[row + columns[x]];
+                output.putFloat(normalized[(pixel >> 16) & 0xFF]);
+                output.putFloat(normalized[(pixel >> 8) & 0xFF]);
+                output.putFloat(normalized[pixel & 0xFF]);
+            }
+        }
+    }
+
+    /**
+     * Nearest neighbour sampling into uint8 tensor, channel bytes are mapped through a byte table
+     * into a row array which is put into the output buffer at once.
+     */
+    private void processNearestUint8(int[] pixels, ByteBuffer output, int firstRow, int endRow) {
+        byte[] rowBytes = this.rowBytes.get();
+        int x, y, row, pixel, i;
+
+        for (y = firstRow; y < endRow; y++) {
+            row = rows[y];
+            for (x = 0, i = 0; x < targetWidth; x++) {
+                pixel = pixels[row + columns[x]];
+                rowBytes[i++] = quantized[(pixel >> 16) & 0xFF];
+                rowBytes[i++] = quantized[(pixel >> 8) & 0xFF];
+                rowBytes[i++] = quantized[pixel & 0xFF];
+            }
+            output.put(rowBytes);
+        }
+    }
+
+    private void processBilinear(int[] pixels, ByteBuffer output, int firstRow, int endRow) {
+        int x, y, shift, topLeft, topRight, bottomLeft, bottomRight;
+        float wx, wy, top, bottom, value;
+
+        for (y = firstRow; y < endRow; y++) {
+            wy = rowWeights[y];
+            for (x = 0; x < targetWidth; x++) {
+                wx = columnWeights[x];
+                topLeft = pixels[rows[y] + columns[x]];
+                topRight = pixels[rows[y] + nextColumns[x]];
+                bottomLeft = pixels[nextRows[y] + columns[x]];
+                bottomRight = pixels[nextRows[y] + nextColumns[x]];
+                for (shift = 16; shift >= 0; shift -= 8) {
+                    top = ((topLeft >> shift) & 0xFF) + wx * (((topRight >> shift) & 0xFF) - ((topLeft >> shift) & 0xFF));
+                    bottom = ((bottomLeft >> shift) & 0xFF) + wx * (((bottomRight >> shift) & 0xFF) - ((bottomLeft >> shift) & 0xFF));
+                    value = (top + wy * (bottom - top) - mean) / std;
+                    if (outputType == OutputType.FLOAT32)
+                        output.putFloat(value);
+                    else
+                        output.put((byte) toUint8(value));
+                }
+            }
+        }
+    }
+
+    /**
+     * Same rounding as casting float tensor to uint8 one, values are truncated and clamped.
+     */
+    private static int toUint8(float value) {
+        if (value <= 0)
+            return 0;
+        if (value >= 255)
+            return 255;
+        return (int) value;
+    }
+
+    /**
+     * Nearest neighbour sampling of Bitmap.createScaledBitmap, source position of
+     * output pixel is taken at its center.
+     */
+    private static void compileNearest(int cropSize, int targetSize, int offset, int[] positions) {
+        for (int i = 0; i < targetSize; i++)
+            positions[i] = offset + Math.min(cropSize - 1, (int) ((i + 0.5) * cropSize / targetSize));
+    }
+
+    /**
+     * Bilinear sampling with half pixel centers and clamped borders.
+     */
+    private static void compileBilinear(int cropSize, int targetSize, int offset, int[] positions,
+                                        int[] nextPositions, float[] weights) {
+        double position, scale = (double) cropSize / targetSize;
+        int first;
+
+        for (int i = 0; i < targetSize; i++) {
+            position = Math.max(0, (i + 0.5) * scale - 0.5);
+            first = Math.min(cropSize - 1, (int) position);
+            positions[i] = offset + first;
+            nextPositions[i] = offset + Math.min(cropSize - 1, first + 1);
+            weights[i] = (float) (position - first);
+        }
+    }
+}
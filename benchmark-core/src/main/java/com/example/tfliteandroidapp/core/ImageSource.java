@@ -0,0 +1,37 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Images of the data set, e.g. assets of the application or files of a directory
+ */
+public interface ImageSource {
+
+    /**
+     * Decoded image as ARGB pixels, row by row
+     */
+    final class Image {
+        public final int width;
+
+        public final int height;
+
+        public final int[] pixels;
+
+        public Image(int width, int height, int[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Returns names of all images of the data set
+     */
+    List<String> list() throws IOException;
+
+    /**
+     * Decodes image with given name, returns null when it is not an image
+     */
+    Image decode(String name) throws IOException;
+}
@@ -0,0 +1,38 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Sink which keeps records in memory, records with the same id are stored once.
+ */
+public class InMemoryResultSink implements ResultSink {
+
+    private final LinkedHashMap<String, String> records = new LinkedHashMap<>();
+
+    private int failuresLeft;
+
+    /**
+     * Makes next write calls fail.
+     *
+     * @param failures number of failing calls
+     */
+    public synchronized void failNext(int failures) {
+        failuresLeft = failures;
+    }
+
+    @Override
+    public synchronized void write(List<ResultRecord> batch) throws Exception {
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            throw new Exception("Simulated failure of result sink");
+        }
+        for (ResultRecord record : batch)
+            records.put(record.id, record.json);
+    }
+
+    public synchronized List<String> getRecords() {
+        return new ArrayList<>(records.values());
+    }
+}
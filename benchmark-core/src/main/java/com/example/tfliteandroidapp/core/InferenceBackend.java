@@ -0,0 +1,25 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.IOException;
+
+/**
+ * Runtime executing models, e.g. TensorFlow Lite on Android or a fake backend in tests
+ */
+public interface InferenceBackend {
+    /**
+     * Creates session of the model. Backend fills modelLoadNanos, delegateInitNanos,
+     * interpreterInitNanos and modelBytes of the cold start.
+     *
+     * @param model      path of the model
+     * @param device     device used for executing inference
+     * @param numThreads thread count of the session, -1 leaves the backend default
+     * @param coldStart  phases of the session creation
+     * @throws IOException when the model could not be loaded
+     */
+    InferenceSession open(String model, Device device, int numThreads, ColdStart coldStart) throws IOException;
+
+    /**
+     * Releases resources shared by sessions, e.g. mapped models. Open sessions stay usable.
+     */
+    void clear();
+}
@@ -0,0 +1,35 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Model loaded on a device with single input and single output tensor.
+ * A session is used by one thread at a time.
+ */
+public interface InferenceSession extends AutoCloseable {
+
+    TensorInfo getInput();
+
+    TensorInfo getOutput();
+
+    /**
+     * Changes first dimension of input and output tensor
+     */
+    void resize(int batchSize);
+
+    /**
+     * Runs inference of the input buffer, output is written from the position of the output buffer
+     */
+    void run(ByteBuffer input, ByteBuffer output) throws Exception;
+
+    /**
+     * Returns duration of the last run measured inside the runtime, without the overhead of the
+     * binding, -1 when the runtime does not measure it
+     */
+    default long getLastNativeNanos() {
+        return -1;
+    }
+
+    @Override
+    void close();
+}
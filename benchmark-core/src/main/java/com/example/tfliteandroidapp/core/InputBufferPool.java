@@ -0,0 +1,78 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pool of direct, native ordered input buffers keyed by model and batch size.
+ * <p>
+ * Buffers are allocated only the first time given (model, batch size) is requested,
+ * so a loop which takes its input buffers from the pool does not allocate them again.
+ * Least recently used buffers are released when the pool exceeds its memory budget.
+ */
+public class InputBufferPool {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    private final long memoryBudget;
+
+    private final LinkedHashMap<String, ByteBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedMemory;
+
+    private long allocations;
+
+    public InputBufferPool(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns cleared buffer of given model and batch size, allocates it when it is not pooled.
+     *
+     * @param model     name of the model
+     * @param batchSize batch size
+     * @param capacity  required capacity in bytes
+     */
+    public ByteBuffer get(String model, int batchSize, int capacity) {
+        String key = model + "@" + batchSize;
+        ByteBuffer buffer = buffers.get(key);
+
+        if (buffer == null || buffer.capacity() != capacity) {
+            if (buffer != null)
+                usedMemory -= buffer.capacity();
+            buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+            allocations++;
+            usedMemory += capacity;
+            buffers.put(key, buffer);
+            release(key);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Number of buffers allocated so far, that is requests which missed the pool
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    public void clear() {
+        buffers.clear();
+        usedMemory = 0;
+    }
+
+    private void release(String current) {
+        Iterator<Map.Entry<String, ByteBuffer>> iterator = buffers.entrySet().iterator();
+        while (usedMemory > memoryBudget && iterator.hasNext()) {
+            Map.Entry<String, ByteBuffer> eldest = iterator.next();
+            if (eldest.getKey().equals(current))
+                continue;
+            usedMemory -= eldest.getValue().capacity();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Decides order of jobs and validates their results with periodic readings of a canary model.
+ * <p>
+ * SHUFFLED order runs all jobs of one round before the next round, every round in its own seeded
+ * random order, so no configuration always runs last on a hot device. When the plan names a canary
+ * model, its median latency is measured before the first job and after every canaryEvery jobs.
+ * Results of jobs since the previous reading are held back until the next reading: when the canary
+ * stayed within canaryDriftThreshold of its first reading they are committed, otherwise they are
+ * queued again up to maxRequeues times, then committed with driftFlagged set.
+ * Caller cools the device down while readings drift.
+ */
+public class JobScheduler {
+
+    /**
+     * Median latency of the canary model
+     */
+    public static class CanaryReading {
+        /**
+         * Number of jobs finished before the reading
+         */
+        public int jobs;
+
+        public double medianNanos;
+
+        /**
+         * Median relative to the first reading, 0 for the first reading
+         */
+        public double drift;
+
+        /**
+         * True when the reading was taken after a cooldown gap
+         */
+        public boolean afterCooldown;
+
+        public long recordedAt;
+    }
+
+    /**
+     * Finished job with its result, result is null when the job could not run
+     */
+    public static class Completed {
+        public final BenchmarkJob job;
+
+        public final ModelResult result;
+
+        Completed(BenchmarkJob job, ModelResult result) {
+            this.job = job;
+            this.result = result;
+        }
+    }
+
+    private final BenchmarkPlan plan;
+
+    private final ArrayDeque<BenchmarkJob> queue;
+
+    private final List<Completed> pending = new ArrayList<>();
+
+    private final Map<BenchmarkJob, Integer> requeues = new IdentityHashMap<>();
+
+    private final ArrayList<CanaryReading> readings = new ArrayList<>();
+
+    private boolean canary;
+
+    private int finished;
+
+    /**
+     * @param plan plan of the jobs, its order, seed and canary settings are used
+     * @param jobs jobs in the order of the planner
+     */
+    public JobScheduler(BenchmarkPlan plan, List<BenchmarkJob> jobs) {
+        this.plan = plan;
+        queue = new ArrayDeque<>(order(plan, jobs));
+        canary = plan.canaryModel != null && !plan.canaryModel.isEmpty();
+    }
+
+    /**
+     * Returns jobs in the order of the plan.
+     */
+    public static List<BenchmarkJob> order(BenchmarkPlan plan, List<BenchmarkJob> jobs) {
+        if (plan.order == BenchmarkPlan.JobOrder.NESTED)
+            return new ArrayList<>(jobs);
+
+        TreeMap<Integer, List<BenchmarkJob>> rounds = new TreeMap<>();
+        List<BenchmarkJob> ordered = new ArrayList<>();
+        Random random = new Random(plan.scheduleSeed);
+
+        for (BenchmarkJob job : jobs) {
+            List<BenchmarkJob> round = rounds.get(job.round);
+            if (round == null) {
+                round = new ArrayList<>();
+                rounds.put(job.round, round);
+            }
+            round.add(job);
+        }
+        for (List<BenchmarkJob> round : rounds.values()) {
+            Collections.shuffle(round, random);
+            ordered.addAll(round);
+        }
+        return ordered;
+    }
+
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    public BenchmarkJob next() {
+        return queue.poll();
+    }
+
+    /**
+     * Returns true when results are validated by canary readings
+     */
+    public boolean usesCanary() {
+        return canary;
+    }
+
+    /**
+     * Turns canary readings off, e.g. when the canary model could not run. Held back results are committed.
+     */
+    public List<Completed> disableCanary() {
+        List<Completed> committed = new ArrayList<>(pending);
+        canary = false;
+        pending.clear();
+        return committed;
+    }
+
+    /**
+     * Records finished job.
+     *
+     * @param result result of the job, null when the job could not run
+     * @return results which can be committed now
+     */
+    public List<Completed> complete(BenchmarkJob job, ModelResult result) {
+        Completed completed = new Completed(job, result);
+
+        if (result != null) {
+            result.order = finished;
+            result.requeues = getRequeues(job);
+        }
+        finished++;
+        if (!canary || result == null)
+            return Collections.singletonList(completed);
+        pending.add(completed);
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns true when the canary should be measured before the next job
+     */
+    public boolean isCanaryDue() {
+        return canary && (readings.isEmpty() || pending.size() >= plan.canaryEvery
+                || !pending.isEmpty() && queue.isEmpty());
+    }
+
+    /**
+     * Records reading of the canary taken after jobs or before the first one.
+     *
+     * @param medianNanos median latency of the canary
+     * @param committed   list to which validated results are added
+     * @return true when the canary drifted past the threshold and the device should cool down
+     */
+    public boolean onCanary(double medianNanos, List<Completed> committed) {
+        CanaryReading reading = record(medianNanos, false);
+        boolean drifted = Math.abs(reading.drift) > plan.canaryDriftThreshold;
+
+        for (Completed completed : pending) {
+            completed.result.canaryDrift = reading.drift;
+            if (drifted && getRequeues(completed.job) < plan.maxRequeues) {
+                requeues.put(completed.job, getRequeues(completed.job) + 1);
+                queue.add(completed.job);
+            } else {
+                completed.result.driftFlagged = drifted;
+                committed.add(completed);
+            }
+        }
+        pending.clear();
+        return drifted;
+    }
+
+    /**
+     * Records reading of the canary taken after a cooldown gap.
+     *
+     * @return true when the canary still drifts past the threshold
+     */
+    public boolean onCooldown(double medianNanos) {
+        return Math.abs(record(medianNanos, true).drift) > plan.canaryDriftThreshold;
+    }
+
+    /**
+     * Returns held back results without validation, e.g. when the run was interrupted
+     */
+    public List<Completed> drain() {
+        List<Completed> drained = new ArrayList<>(pending);
+        pending.clear();
+        return drained;
+    }
+
+    public ArrayList<CanaryReading> getReadings() {
+        return readings;
+    }
+
+    private CanaryReading record(double medianNanos, boolean afterCooldown) {
+        CanaryReading reading = new CanaryReading();
+
+        reading.jobs = finished;
+        reading.medianNanos = medianNanos;
+        reading.drift = readings.isEmpty() ? 0 : medianNanos / readings.get(0).medianNanos - 1;
+        reading.afterCooldown = afterCooldown;
+        reading.recordedAt = System.currentTimeMillis();
+        readings.add(reading);
+        return reading;
+    }
+
+    private int getRequeues(BenchmarkJob job) {
+        Integer count = requeues.get(job);
+        return count != null ? count : 0;
+    }
+}
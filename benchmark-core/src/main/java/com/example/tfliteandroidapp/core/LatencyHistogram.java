@@ -0,0 +1,232 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.Arrays;
+
+/**
+ * Fixed memory recorder of latencies in nanoseconds.
+ * <p>
+ * Values are counted in log buckets: every power of two range is split into 64 linear
+ * sub-buckets, so percentiles have relative error below 1.6% and values below 128ns are exact.
+ * Recording only increments counters and does not allocate. Optionally a bounded reservoir
+ * keeps a uniform random sample of raw values.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = EXACT_BUCKETS + MAX_SHIFT * SUB_BUCKETS;
+    private static final int RESERVOIR_CAPACITY_FOR_OVERHEAD = 64;
+
+    private final long[] counts = new long[NUM_BUCKETS];
+
+    private long count;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = Long.MIN_VALUE;
+
+    private double sum;
+
+    private double sumOfSquares;
+
+    private final long[] reservoir;
+
+    private int reservoirSize;
+
+    private long randomState = 0x9E3779B97F4A7C15L;
+
+    public LatencyHistogram() {
+        this(0);
+    }
+
+    /**
+     * @param reservoirCapacity number of raw values kept as a uniform sample, 0 turns reservoir off
+     */
+    public LatencyHistogram(int reservoirCapacity) {
+        reservoir = new long[reservoirCapacity];
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+
+        counts[bucketOf(nanos)]++;
+        count++;
+        if (nanos < min)
+            min = nanos;
+        if (nanos > max)
+            max = nanos;
+        sum += nanos;
+        sumOfSquares += (double) nanos * nanos;
+
+        if (reservoir.length > 0) {
+            if (reservoirSize < reservoir.length) {
+                reservoir[reservoirSize++] = nanos;
+            } else {
+                long slot = nextRandom() % count;
+                if (slot < reservoir.length)
+                    reservoir[(int) slot] = nanos;
+            }
+        }
+    }
+
+    /**
+     * Adds all values recorded by other histogram. Reservoir keeps values of both
+     * histograms in proportion to their counts.
+     */
+    public void merge(LatencyHistogram other) {
+        long total = count + other.count;
+        int i;
+
+        for (i = 0; i < NUM_BUCKETS; i++)
+            counts[i] += other.counts[i];
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+
+        for (i = 0; i < other.reservoirSize && reservoir.length > 0; i++) {
+            if (reservoirSize < reservoir.length) {
+                reservoir[reservoirSize++] = other.reservoir[i];
+            } else if (nextRandom() % total < other.count) {
+                reservoir[(int) (nextRandom() % reservoir.length)] = other.reservoir[i];
+            }
+        }
+        count = total;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        sum = 0;
+        sumOfSquares = 0;
+        reservoirSize = 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    public double getStdDev() {
+        if (count < 2)
+            return 0;
+        double mean = sum / count;
+        return Math.sqrt(Math.max(0, (sumOfSquares - count * mean * mean) / (count - 1)));
+    }
+
+    /**
+     * Returns value below which given percentage of recorded values fall.
+     *
+     * @param percentile percentile from 0 to 100
+     * @return middle of the bucket containing the percentile, clamped to min and max
+     */
+    public double getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                double middle = lowerBound(i) + (bucketWidth(i) - 1) / 2.0;
+                return Math.min(max, Math.max(min, middle));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns copy of raw values kept in reservoir
+     */
+    public long[] getReservoir() {
+        return Arrays.copyOf(reservoir, reservoirSize);
+    }
+
+    /**
+     * Returns summary of recorded values.
+     */
+    public LatencySummary getSummary() {
+        LatencySummary summary = new LatencySummary();
+        summary.count = count;
+        summary.min = getMin();
+        summary.mean = getMean();
+        summary.p50 = getPercentile(50);
+        summary.p90 = getPercentile(90);
+        summary.p99 = getPercentile(99);
+        summary.p999 = getPercentile(99.9);
+        summary.max = getMax();
+        summary.stdDev = getStdDev();
+        return summary;
+    }
+
+    /**
+     * Measures average cost of record() on the current thread.
+     *
+     * @param iterations number of recorded values
+     * @return nanoseconds per recorded value
+     */
+    public static double measureRecordOverhead(int iterations) {
+        LatencyHistogram histogram = new LatencyHistogram(RESERVOIR_CAPACITY_FOR_OVERHEAD);
+        long value = 1000000, startTime;
+
+        for (int i = 0; i < iterations; i++)
+            histogram.record(value + (i & 0xFFFF));
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            histogram.record(value + (i & 0xFFFF));
+        return (double) (System.nanoTime() - startTime) / iterations;
+    }
+
+    static int bucketOf(long value) {
+        if (value < EXACT_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return EXACT_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < EXACT_BUCKETS)
+            return bucket;
+        int shift = (bucket - EXACT_BUCKETS) / SUB_BUCKETS + 1;
+        return (long) ((bucket - EXACT_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    static long bucketWidth(int bucket) {
+        if (bucket < EXACT_BUCKETS)
+            return 1;
+        return 1L << ((bucket - EXACT_BUCKETS) / SUB_BUCKETS + 1);
+    }
+
+    /**
+     * Xorshift generator, non negative result
+     */
+    private long nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return randomState & Long.MAX_VALUE;
+    }
+}
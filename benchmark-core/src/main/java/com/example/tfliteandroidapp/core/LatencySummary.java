@@ -0,0 +1,30 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Statistics of recorded latencies in nanoseconds
+ */
+public class LatencySummary {
+    public long count;
+
+    public double min;
+
+    public double mean;
+
+    public double p50;
+
+    public double p90;
+
+    public double p99;
+
+    public double p999;
+
+    public double max;
+
+    public double stdDev;
+
+    @Override
+    public String toString() {
+        return String.format("n=%d min=%.3fms mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms sd=%.3fms",
+                count, min / 1e6, mean / 1e6, p50 / 1e6, p90 / 1e6, p99 / 1e6, p999 / 1e6, max / 1e6, stdDev / 1e6);
+    }
+}
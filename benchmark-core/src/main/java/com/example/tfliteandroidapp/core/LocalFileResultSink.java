@@ -0,0 +1,34 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Sink which appends records to a local file, one JSON document per line.
+ */
+public class LocalFileResultSink implements ResultSink {
+
+    private final File file;
+
+    public LocalFileResultSink(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void write(List<ResultRecord> records) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(file, true);
+             Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+            for (ResultRecord record : records) {
+                writer.write(record.json);
+                writer.write('\n');
+            }
+            writer.flush();
+            output.getFD().sync();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded log of messages written by benchmark threads without locks and rendered by the UI thread.
+ * <p>
+ * Writers claim a sequence number with an atomic counter and overwrite the oldest message when the
+ * ring is full. Every slot carries sequence number of its message, or a negative writing mark of the
+ * writer which owns it, so the reader skips slots overwritten during rendering. Writers of sequences
+ * one ring length apart share a slot: the newer one waits until the older one published its message,
+ * and the older one drops its message when the newer one already owns the slot. While a timed
+ * section is in progress the UI does not render, messages written meanwhile replace older ones and
+ * are shown together after the section.
+ */
+public class LogRing {
+
+    private final int mask;
+
+    private final AtomicReferenceArray<String> messages;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong next = new AtomicLong();
+
+    private volatile boolean timedSection;
+
+    /**
+     * Number of messages written when the ring was last rendered, or sequence of the oldest message
+     * which was still in flight then, used only by the rendering thread
+     */
+    private long rendered = -1;
+
+    /**
+     * @param capacity number of kept messages, rounded up to a power of two
+     */
+    public LogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+        mask = size - 1;
+        messages = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, -1);
+    }
+
+    /**
+     * Appends message, safe to call from any thread.
+     */
+    public void add(String message) {
+        publish(claim(), message);
+    }
+
+    /**
+     * Returns sequence number of a new message, the message is in flight until it is published
+     */
+    long claim() {
+        return next.getAndIncrement();
+    }
+
+    /**
+     * Writes message with sequence number returned by claim() into its slot.
+     */
+    void publish(long sequence, String message) {
+        int slot = (int) (sequence & mask);
+
+        while (true) {
+            long current = sequences.get(slot);
+            // marks of writers are -2 and below, -1 is an empty slot
+            long owner = current < -1 ? -current - 2 : current;
+            // a newer message owns the slot, this one would be overwritten anyway
+            if (owner > sequence)
+                return;
+            if (current < -1)
+                Thread.yield();
+            else if (sequences.compareAndSet(slot, current, -sequence - 2))
+                break;
+        }
+        messages.set(slot, message);
+        sequences.set(slot, sequence);
+    }
+
+    public void setTimedSection(boolean timedSection) {
+        this.timedSection = timedSection;
+    }
+
+    /**
+     * Returns true while inferences are timed and the UI should not render
+     */
+    public boolean isTimedSection() {
+        return timedSection;
+    }
+
+    /**
+     * Returns number of messages written so far
+     */
+    public long getCount() {
+        return next.get();
+    }
+
+    /**
+     * Builds text of the newest messages, newest first, one per line. Must be called from one thread.
+     *
+     * @param lines maximum number of messages
+     * @return text or null when no message was written or published since the last call
+     */
+    public String render(int lines) {
+        long end = next.get();
+        StringBuilder text = new StringBuilder();
+        int shown = 0;
+
+        long inFlight = -1;
+
+        if (end == rendered)
+            return null;
+        for (long sequence = end - 1; sequence >= Math.max(0, end - mask - 1) && shown < lines; sequence--) {
+            int slot = (int) (sequence & mask);
+            if (sequences.get(slot) != sequence) {
+                // claimed but not published yet, the next call renders again until it is
+                inFlight = sequence;
+                continue;
+            }
+            String message = messages.get(slot);
+            // slot was overwritten while the message was read
+            if (sequences.get(slot) != sequence)
+                continue;
+            text.append(message).append('\n');
+            shown++;
+        }
+        rendered = inFlight >= 0 ? inFlight : end;
+        return text.toString();
+    }
+}
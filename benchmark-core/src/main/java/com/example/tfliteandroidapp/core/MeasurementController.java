@@ -0,0 +1,248 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.Arrays;
+
+/**
+ * Decides how long a job is warmed up and measured.
+ * <p>
+ * Warmup runs a fixed number of inferences or, when the count is negative, until the median of
+ * the last window of inferences is within tolerance of the median of the window before.
+ * Measurement then continues until the 95% confidence interval of the median, taken from
+ * order statistics of all measured times, is narrower than the target relative width,
+ * or until the time budget or the maximum number of inferences is reached.
+ * With target width 0 exactly maxIterations inferences are measured.
+ */
+public class MeasurementController {
+
+    public enum StopReason {
+        FIXED,
+        CONVERGED,
+        TIME_BUDGET,
+        MAX_ITERATIONS
+    }
+
+    static final int WARMUP_WINDOW = 5;
+    static final double WARMUP_TOLERANCE = 0.05;
+    static final int CHECK_INTERVAL = 5;
+    private static final double Z_95 = 1.96;
+
+    private final int warmup;
+
+    private final int maxWarmup;
+
+    private final double targetRelativeWidth;
+
+    private final int minIterations;
+
+    private final long timeBudgetNanos;
+
+    private final Clock clock;
+
+    private final long[] samples;
+
+    private final long[] sorted;
+
+    private final long[] warmupWindow = new long[2 * WARMUP_WINDOW];
+
+    private final long[] window = new long[WARMUP_WINDOW];
+
+    private final LatencyHistogram warmupHistogram = new LatencyHistogram();
+
+    private int warmupIterations;
+
+    private long firstNanos = -1;
+
+    private boolean warmingUp;
+
+    private int count;
+
+    private long startTime;
+
+    private double medianCiWidth = Double.NaN;
+
+    /**
+     * Number of measured inferences from which medianCiWidth was computed
+     */
+    private int medianCiCount = -1;
+
+    private StopReason stopReason;
+
+    /**
+     * @param warmup              number of warmup inferences, negative detects end of warmup automatically
+     * @param maxWarmup           maximum number of warmup inferences when warmup is detected
+     * @param targetRelativeWidth width of the median confidence interval relative to the median
+     *                            at which measurement stops, 0 measures exactly maxIterations
+     * @param minIterations       minimum number of measured inferences before convergence is checked
+     * @param maxIterations       maximum number of measured inferences
+     * @param timeBudgetNanos     maximum duration of measurement, 0 means unlimited
+     * @param clock               source of time of the budget
+     */
+    public MeasurementController(int warmup, int maxWarmup, double targetRelativeWidth, int minIterations,
+                                 int maxIterations, long timeBudgetNanos, Clock clock) {
+        this.warmup = warmup;
+        this.maxWarmup = maxWarmup;
+        this.targetRelativeWidth = targetRelativeWidth;
+        this.minIterations = Math.max(1, minIterations);
+        this.timeBudgetNanos = timeBudgetNanos;
+        this.clock = clock;
+        samples = new long[Math.max(1, maxIterations)];
+        sorted = new long[samples.length];
+        warmingUp = warmup > 0 || (warmup < 0 && maxWarmup > 0);
+    }
+
+    /**
+     * Creates controller of one job of the plan.
+     *
+     * @param plan           benchmark plan
+     * @param batchesPerPass number of batches in one pass over the data set,
+     *                       measured count of non adaptive plans
+     */
+    public static MeasurementController forPlan(BenchmarkPlan plan, int batchesPerPass) {
+        if (plan.targetMedianCi <= 0)
+            return new MeasurementController(plan.warmup, plan.maxWarmup, 0, batchesPerPass,
+                    batchesPerPass, 0, Clock.SYSTEM);
+        return new MeasurementController(plan.warmup, plan.maxWarmup, plan.targetMedianCi, plan.minInferences,
+                plan.maxInferences, plan.timeBudgetMs * 1000000L, Clock.SYSTEM);
+    }
+
+    public boolean isWarmingUp() {
+        return warmingUp;
+    }
+
+    /**
+     * Records duration of one warmup inference.
+     *
+     * @return true when warmup should continue
+     */
+    public boolean recordWarmup(long nanos) {
+        if (firstNanos < 0)
+            firstNanos = nanos;
+        warmupHistogram.record(nanos);
+        warmupWindow[warmupIterations % warmupWindow.length] = nanos;
+        warmupIterations++;
+
+        if (warmup > 0)
+            warmingUp = warmupIterations < warmup;
+        else
+            warmingUp = warmupIterations < maxWarmup && !isStable();
+        return warmingUp;
+    }
+
+    /**
+     * Ends warmup and starts the time budget of measurement.
+     */
+    public void start() {
+        warmingUp = false;
+        count = 0;
+        stopReason = null;
+        medianCiCount = -1;
+        startTime = clock.nanoTime();
+    }
+
+    /**
+     * Records duration of one measured inference, does not allocate.
+     *
+     * @return true when measurement should continue
+     */
+    public boolean record(long nanos) {
+        if (stopReason != null)
+            return false;
+        if (firstNanos < 0)
+            firstNanos = nanos;
+        samples[count++] = nanos;
+
+        if (targetRelativeWidth <= 0) {
+            if (count == samples.length)
+                stopReason = StopReason.FIXED;
+        } else if (count >= minIterations && (count - minIterations) % CHECK_INTERVAL == 0
+                && getMedianCiWidth() <= targetRelativeWidth) {
+            stopReason = StopReason.CONVERGED;
+        } else if (count == samples.length) {
+            stopReason = StopReason.MAX_ITERATIONS;
+        } else if (timeBudgetNanos > 0 && clock.nanoTime() - startTime >= timeBudgetNanos) {
+            stopReason = StopReason.TIME_BUDGET;
+        }
+        return stopReason == null;
+    }
+
+    public boolean isDone() {
+        return stopReason != null;
+    }
+
+    /**
+     * Returns reason why measurement stopped or null while it is running
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public int getIterations() {
+        return count;
+    }
+
+    /**
+     * Returns duration of the first inference of warmup or of measurement when there was no warmup
+     */
+    public long getFirstNanos() {
+        return firstNanos;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public LatencySummary getWarmupSummary() {
+        return warmupHistogram.getSummary();
+    }
+
+    /**
+     * Returns width of the 95% confidence interval of the median relative to the median of all
+     * inferences measured so far, it is recomputed only when inferences were recorded since the last call
+     */
+    public double getMedianCiWidth() {
+        if (medianCiCount != count) {
+            System.arraycopy(samples, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            medianCiWidth = medianCiWidth(sorted, count);
+            medianCiCount = count;
+        }
+        return medianCiWidth;
+    }
+
+    /**
+     * Distribution free confidence interval of the median: ranks n/2 -+ 1.96 * sqrt(n) / 2.
+     *
+     * @param sorted ascending values
+     * @param n      number of values
+     * @return width of the interval relative to the median, infinity for less than 2 values
+     */
+    static double medianCiWidth(long[] sorted, int n) {
+        if (n < 2)
+            return Double.POSITIVE_INFINITY;
+        double half = Z_95 * Math.sqrt(n) / 2;
+        int lower = Math.max(0, (int) Math.floor(n / 2.0 - half) - 1);
+        int upper = Math.min(n - 1, (int) Math.ceil(n / 2.0 + half));
+        long median = (n % 2 == 1) ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+        if (median <= 0)
+            return Double.POSITIVE_INFINITY;
+        return (double) (sorted[upper] - sorted[lower]) / median;
+    }
+
+    /**
+     * Returns true when median of the last warmup window is close to median of the window before
+     */
+    private boolean isStable() {
+        if (warmupIterations < warmupWindow.length)
+            return false;
+        long previous = windowMedian(warmupIterations - 2 * WARMUP_WINDOW);
+        long last = windowMedian(warmupIterations - WARMUP_WINDOW);
+        return previous > 0 && Math.abs(last - previous) <= WARMUP_TOLERANCE * previous;
+    }
+
+    private long windowMedian(int first) {
+        for (int i = 0; i < WARMUP_WINDOW; i++)
+            window[i] = warmupWindow[(first + i) % warmupWindow.length];
+        Arrays.sort(window);
+        return window[WARMUP_WINDOW / 2];
+    }
+}
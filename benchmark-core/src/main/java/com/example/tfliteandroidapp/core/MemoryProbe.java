@@ -0,0 +1,18 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Reads memory used by the process, native heap is platform specific
+ */
+public interface MemoryProbe {
+    /**
+     * Probe of a plain JVM which cannot see native heap
+     */
+    MemoryProbe JVM = () -> 0;
+
+    long nativeHeapUsed();
+
+    default long javaHeapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
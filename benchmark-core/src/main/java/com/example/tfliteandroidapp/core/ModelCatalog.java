@@ -0,0 +1,170 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Index of metadata of model files kept on disk between runs.
+ * <p>
+ * Metadata of a model is read from its flatbuffer once and stored together with size and CRC32
+ * of the file. Entry is reused while the content has the same size and CRC32, every model is
+ * checked at most once per catalog instance.
+ */
+public class ModelCatalog {
+
+    private static final int INDEX_VERSION = 1;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Opens content of a model file, e.g. memory mapped asset
+     */
+    public interface ModelSource {
+        ByteBuffer open(String path) throws IOException;
+    }
+
+    static class Index {
+        int version = INDEX_VERSION;
+
+        HashMap<String, ModelInfo> models = new HashMap<>();
+    }
+
+    private final File indexFile;
+
+    private final ModelSource source;
+
+    private Index index = new Index();
+
+    private final Set<String> checked = new HashSet<>();
+
+    private boolean dirty;
+
+    private long hits, misses;
+
+    /**
+     * Reason why the index on disk was not used, null when it was loaded or did not exist
+     */
+    private String indexError;
+
+    private BenchmarkListener listener = BenchmarkListener.NONE;
+
+    /**
+     * Loads index from the file, missing or unreadable index starts empty.
+     *
+     * @param indexFile file of the index, null keeps the index only in memory
+     * @param source    content of model files
+     */
+    public ModelCatalog(File indexFile, ModelSource source) {
+        this.indexFile = indexFile;
+        this.source = source;
+
+        if (indexFile == null || !indexFile.exists())
+            return;
+        try (Reader reader = new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8)) {
+            Index loaded = GSON.fromJson(reader, Index.class);
+            if (loaded != null && loaded.version == INDEX_VERSION && loaded.models != null)
+                index = loaded;
+        } catch (IOException | JsonParseException e) {
+            indexError = e.getMessage();
+        }
+    }
+
+    /**
+     * Sets listener which is told when a model could not be read.
+     */
+    public void setListener(BenchmarkListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns metadata of the model, reads the flatbuffer when the indexed content differs.
+     *
+     * @param path path of the model
+     * @return metadata or null when the model could not be read
+     */
+    public synchronized ModelInfo get(String path) {
+        ModelInfo info = index.models.get(path);
+        ByteBuffer content;
+        long crc32;
+
+        if (info != null && checked.contains(path))
+            return info;
+        try {
+            content = source.open(path);
+            crc32 = crc32(content);
+            if (info != null && info.size == content.capacity() && info.crc32 == crc32) {
+                hits++;
+            } else {
+                misses++;
+                info = TfLiteModelReader.read(content);
+                info.size = content.capacity();
+                info.crc32 = crc32;
+                index.models.put(path, info);
+                dirty = true;
+            }
+        } catch (IOException e) {
+            listener.onMessage("Could not read model " + path + ": " + e.getMessage());
+            return null;
+        }
+        checked.add(path);
+        return info;
+    }
+
+    /**
+     * Writes index to a temporary file and renames it when any entry was added or replaced.
+     *
+     * @return true when the index was written
+     */
+    public synchronized boolean save() throws IOException {
+        File tmp;
+
+        if (!dirty || indexFile == null)
+            return false;
+        tmp = new File(indexFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tmp)) {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            GSON.toJson(index, writer);
+            writer.flush();
+            output.getFD().sync();
+        }
+        if (!tmp.renameTo(indexFile))
+            throw new IOException("Could not replace " + indexFile);
+        dirty = false;
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Model catalog hits: " + hits + " misses: " + misses
+                + (indexError != null ? " index rebuilt: " + indexError : "");
+    }
+
+    static long crc32(ByteBuffer content) {
+        ByteBuffer buffer = content.duplicate();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        CRC32 crc = new CRC32();
+
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metadata of a .tflite model read from its flatbuffer without creating an interpreter
+ */
+public class ModelInfo {
+
+    /**
+     * Tensor of the main subgraph
+     */
+    public static class Tensor {
+        public String name;
+
+        public int[] shape;
+
+        /**
+         * TFLite tensor type name, e.g. FLOAT32, UINT8 or INT8
+         */
+        public String type;
+
+        /**
+         * Quantization scale of the first channel, 0 when not quantized
+         */
+        public float scale;
+
+        public long zeroPoint;
+
+        public boolean isQuantized() {
+            return "UINT8".equals(type) || "INT8".equals(type);
+        }
+    }
+
+    /**
+     * Size of the model file in bytes
+     */
+    public long size;
+
+    /**
+     * CRC32 of the whole model file, cached metadata is valid only for the same content
+     */
+    public long crc32;
+
+    public int schemaVersion;
+
+    public String description;
+
+    public List<Tensor> inputs = new ArrayList<>();
+
+    public List<Tensor> outputs = new ArrayList<>();
+
+    /**
+     * Sorted names of builtin operators of the model
+     */
+    public List<String> ops = new ArrayList<>();
+
+    /**
+     * Sorted names of custom operators, e.g. edgetpu-custom-op
+     */
+    public List<String> customOps = new ArrayList<>();
+
+    /**
+     * Returns true when any input or output tensor is quantized
+     */
+    public boolean isQuantized() {
+        for (Tensor tensor : inputs)
+            if (tensor.isQuantized())
+                return true;
+        for (Tensor tensor : outputs)
+            if (tensor.isQuantized())
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.tfliteandroidapp.core;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+
+public class ModelResult {
+    /**
+     * Number of raw inference times kept as a random sample in results
+     */
+    private static final int RESERVOIR_SIZE = 64;
+
+    public String modelName  = "";
+
+//    public String label  = "";
+
+//    public String inferenceTime = "";
+    public int round;
+
+    public int batchSize;
+
+    public Device delegate;
+
+    public int numThreads;
+
+    /**
+     * Position of the job in the executed order of the run, re-runs included
+     */
+    public int order;
+
+    /**
+     * Number of times the job was queued again because the canary drifted
+     */
+    public int requeues;
+
+    /**
+     * Drift of the canary reading which validated this result, relative to the first reading
+     */
+    public double canaryDrift;
+
+    /**
+     * True when the canary drifted past the threshold and the job could not be queued again
+     */
+    public boolean driftFlagged;
+
+    /**
+     * Misses of the input buffer pool while the job was measured. Only pipelined, concurrent and
+     * streaming runs take input buffers from the pool, sequential runs infer views of the data set.
+     * Other allocations, for example of latency recording or post-processing, are not counted.
+     */
+    public long inputBufferPoolMisses;
+
+    /**
+     * True when batches were prepared and post-processed on worker threads during inference
+     */
+    public boolean pipelined;
+
+    /**
+     * End-to-end throughput of batch preparation, inference and post-processing in images per second
+     */
+    public double throughput;
+
+    /**
+     * Cost of the first use of the model on the device, null when the interpreter was cached
+     */
+    public ColdStart coldStart;
+
+    /**
+     * Number of unrecorded inferences before measurement
+     */
+    public int warmupIterations;
+
+    /**
+     * Statistics of warmup inference times, the first one includes delegate and kernel setup
+     */
+    public LatencySummary warmupLatency;
+
+    /**
+     * Number of measured inferences
+     */
+    public int iterations;
+
+    /**
+     * Reason why measurement stopped
+     */
+    public MeasurementController.StopReason stopReason;
+
+    /**
+     * Width of 95% confidence interval of the median latency relative to the median
+     */
+    public double medianCiWidth;
+
+    /**
+     * Throughput and latency with 1 to N interpreters running in parallel, null when not measured
+     */
+    public ArrayList<ConcurrentRunner.Level> concurrency;
+
+    /**
+     * Number of parallel interpreters after which throughput stops scaling
+     */
+    public int concurrencyKnee;
+
+    /**
+     * Frame rate, dropped frames and latency of the streaming mode, null when not measured
+     */
+    public StreamingRunner.Result streaming;
+
+    /**
+     * Statistics of all inference times, filled by finish()
+     */
+    public LatencySummary latency;
+
+    /**
+     * Statistics of inference times measured inside the runtime for traced batches, null when the run
+     * was not traced or the backend does not measure them. Difference to latency is the overhead of the binding.
+     */
+    public LatencySummary nativeLatency;
+
+    /**
+     * Bounded random sample of inference times, filled by finish()
+     */
+    public ArrayList<SingleInferenceResult> results = new ArrayList<>();
+
+    private transient LatencyHistogram histogram = new LatencyHistogram(RESERVOIR_SIZE);
+
+    private transient LatencyHistogram nativeHistogram;
+
+    /**
+     * Records duration of one inference, does not allocate.
+     *
+     * @param nanos measured duration in nanoseconds
+     */
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    /**
+     * Records duration of one inference measured inside the runtime, negative durations are ignored.
+     */
+    public void recordNative(long nanos) {
+        if (nanos < 0)
+            return;
+        if (nativeHistogram == null)
+            nativeHistogram = new LatencyHistogram();
+        nativeHistogram.record(nanos);
+    }
+
+    /**
+     * Adds inference times of other result, e.g. of another round or device.
+     */
+    public void merge(ModelResult other) {
+        histogram.merge(other.histogram);
+        if (other.nativeHistogram != null) {
+            if (nativeHistogram == null)
+                nativeHistogram = new LatencyHistogram();
+            nativeHistogram.merge(other.nativeHistogram);
+        }
+    }
+
+    public LatencyHistogram histogram() {
+        return histogram;
+    }
+
+    /**
+     * Computes latency summary and copies raw sample to results.
+     */
+    public void finish() {
+        latency = histogram.getSummary();
+        nativeLatency = nativeHistogram != null ? nativeHistogram.getSummary() : null;
+        results.clear();
+        for (long nanos : histogram.getReservoir()) {
+            SingleInferenceResult result = new SingleInferenceResult();
+            result.durationMeasured = nanos;
+            results.add(result);
+        }
+    }
+}
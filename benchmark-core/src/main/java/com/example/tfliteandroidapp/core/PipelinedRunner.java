@@ -0,0 +1,181 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs batches as a three stage pipeline: batch N+1 is prepared and batch N-1 is
+ * post-processed on worker threads while batch N is inferring on the calling thread.
+ * <p>
+ * Every batch travels through the pipeline in a slot with its own input and output buffer.
+ * Number of slots bounds the hand-off queues, so the producer waits when inference falls
+ * behind. Only the inference call is timed. When a worker stage fails or is interrupted, it
+ * hands a FAILED sentinel to the inference loop, which then rethrows the failure. Both worker
+ * stages are stopped before run() returns or throws, so they never overlap the next run.
+ */
+public class PipelinedRunner {
+
+    /**
+     * Writes batch with given index into the input buffer
+     */
+    public interface BatchProducer {
+        void fill(int batch, ByteBuffer input);
+    }
+
+    /**
+     * Runs inference of a single batch
+     */
+    public interface Inference {
+        void run(ByteBuffer input, ByteBuffer output) throws Exception;
+    }
+
+    /**
+     * Consumes output of slot with given index
+     */
+    public interface PostProcessor {
+        void process(int slot, ByteBuffer output);
+    }
+
+    /**
+     * Receives duration of every inference in nanoseconds
+     */
+    public interface LatencyListener {
+        void onInference(long nanos);
+    }
+
+    private static final Integer FAILED = -1;
+
+    private final ExecutorService producerExecutor = Executors.newSingleThreadExecutor();
+
+    private final ExecutorService postExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Runs numBatches batches through the pipeline.
+     *
+     * @param numBatches number of batches
+     * @param inputs     input buffer of every slot, at least two
+     * @param outputs    output buffer of every slot
+     * @return wall time of the whole pipeline in nanoseconds
+     * @throws InterruptedException when the calling thread or a worker stage was interrupted
+     * @throws Exception            first exception thrown by any stage
+     */
+    public long run(final int numBatches, final ByteBuffer[] inputs, final ByteBuffer[] outputs,
+                    final BatchProducer producer, Inference inference,
+                    final PostProcessor postProcessor, LatencyListener listener) throws Exception {
+        // every queue has room for all slots and one FAILED sentinel
+        final ArrayBlockingQueue<Integer> free = new ArrayBlockingQueue<>(inputs.length + 1);
+        final ArrayBlockingQueue<Integer> ready = new ArrayBlockingQueue<>(inputs.length + 1);
+        final ArrayBlockingQueue<Integer> inferred = new ArrayBlockingQueue<>(inputs.length + 1);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final AtomicBoolean stop = new AtomicBoolean();
+        long startTime, endTime, wallStartTime;
+        int slot;
+
+        for (slot = 0; slot < inputs.length; slot++)
+            free.add(slot);
+
+        wallStartTime = System.nanoTime();
+        Future<?> produce = producerExecutor.submit(() -> {
+            try {
+                for (int batch = 0; batch < numBatches && !stop.get(); batch++) {
+                    int s = free.take();
+                    if (s == FAILED)
+                        break;
+                    inputs[s].clear();
+                    producer.fill(batch, inputs[s]);
+                    inputs[s].rewind();
+                    ready.put(s);
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+                ready.offer(FAILED);
+            }
+        });
+        Future<?> postProcess = postExecutor.submit(() -> {
+            try {
+                for (int batch = 0; batch < numBatches && !stop.get(); batch++) {
+                    int s = inferred.take();
+                    if (s == FAILED)
+                        break;
+                    outputs[s].rewind();
+                    postProcessor.process(s, outputs[s]);
+                    free.put(s);
+                }
+            } catch (InterruptedException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+                ready.offer(FAILED);
+            }
+        });
+
+        try {
+            for (int batch = 0; batch < numBatches; batch++) {
+                slot = ready.take();
+                if (slot == FAILED)
+                    throw failure.get();
+                outputs[slot].rewind();
+                startTime = System.nanoTime();
+                inference.run(inputs[slot], outputs[slot]);
+                endTime = System.nanoTime();
+                listener.onInference(endTime - startTime);
+                inferred.put(slot);
+            }
+            postProcess.get();
+            if (failure.get() != null)
+                throw failure.get();
+        } finally {
+            // stages may swallow interruption inside fill() or process(), so they are stopped by the flag
+            // and woken up from blocking take() by the sentinel
+            stop.set(true);
+            free.offer(FAILED);
+            inferred.offer(FAILED);
+            produce.cancel(false);
+            postProcess.cancel(false);
+            awaitIdle(producerExecutor);
+            awaitIdle(postExecutor);
+        }
+        return System.nanoTime() - wallStartTime;
+    }
+
+    /**
+     * Waits until the stage running on the executor finished. A stopped stage may still be inside
+     * fill() or process(), and a cancelled task which never started does not run at all, so an empty
+     * task queued behind it is awaited instead.
+     * Interruption of the calling thread is restored after the wait.
+     */
+    private static void awaitIdle(ExecutorService executor) {
+        boolean interrupted = false;
+        Future<?> idle;
+
+        try {
+            idle = executor.submit(() -> {
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down, there is no next run to overlap
+            return;
+        }
+        while (true) {
+            try {
+                idle.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    public void shutdown() {
+        producerExecutor.shutdownNow();
+        postExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares latencies of a candidate result set with a baseline, e.g. two TFLite versions or firmwares.
+ * <p>
+ * Results are keyed by model, device, batch size, thread count and system. A result keeps only a random
+ * sample of at most 64 raw inference times of every model run (ModelResult.results), and the samples of
+ * all rounds and runs of one key are pooled. Every run therefore weighs the same however many inferences
+ * it measured, and the tests see the samples, not all inference times. Every key gets a verdict from
+ * a two-sided Mann-Whitney U test and a percentile bootstrap confidence interval of the relative change
+ * of the median: a change is reported only when it is significant and the whole interval lies beyond
+ * the minimum effect.
+ * Works offline on result files written by the journal or LocalFileResultSink.
+ */
+public class RegressionDetector {
+
+    public enum Verdict {
+        REGRESSION,
+        IMPROVEMENT,
+        NO_CHANGE,
+        /**
+         * Fewer than minSamples sampled inference times on one of the sides
+         */
+        INSUFFICIENT_DATA,
+        MISSING_BASELINE,
+        MISSING_CANDIDATE
+    }
+
+    /**
+     * Comparison of one configuration
+     */
+    public static class Comparison {
+        public String model;
+
+        public Device device;
+
+        public int batchSize;
+
+        public int numThreads;
+
+        public String system;
+
+        /**
+         * Number of sampled inference times of the baseline
+         */
+        public int baselineCount;
+
+        public int candidateCount;
+
+        /**
+         * Median latency in nanoseconds, NaN when the side is missing
+         */
+        public double baselineMedian = Double.NaN;
+
+        public double candidateMedian = Double.NaN;
+
+        /**
+         * Change of the median relative to the baseline, positive is slower
+         */
+        public double medianDelta = Double.NaN;
+
+        /**
+         * Bounds of the confidence interval of medianDelta
+         */
+        public double ciLow = Double.NaN;
+
+        public double ciHigh = Double.NaN;
+
+        /**
+         * Two-sided p-value of the Mann-Whitney U test
+         */
+        public double pValue = Double.NaN;
+
+        public Verdict verdict;
+
+        @Override
+        public String toString() {
+            String config = String.format("%s %s batch %d threads %d [%s]", model, device, batchSize, numThreads, system);
+            if (Double.isNaN(medianDelta))
+                return String.format("%-17s %s (n=%d/%d)", verdict, config, baselineCount, candidateCount);
+            return String.format("%-17s %s: %.3fms -> %.3fms %+.1f%% CI [%+.1f%%, %+.1f%%] p=%.2g (n=%d/%d)",
+                    verdict, config, baselineMedian / 1e6, candidateMedian / 1e6, medianDelta * 100,
+                    ciLow * 100, ciHigh * 100, pValue, baselineCount, candidateCount);
+        }
+    }
+
+    /**
+     * Verdicts of all configurations found in the baseline or the candidate
+     */
+    public static class Report {
+        public double alpha;
+
+        public double minEffect;
+
+        public double confidence;
+
+        public List<Comparison> comparisons = new ArrayList<>();
+
+        public int count(Verdict verdict) {
+            int count = 0;
+            for (Comparison comparison : comparisons)
+                if (comparison.verdict == verdict)
+                    count++;
+            return count;
+        }
+
+        public boolean hasRegressions() {
+            return count(Verdict.REGRESSION) > 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Comparison comparison : comparisons)
+                text.append(comparison).append('\n');
+            text.append("Regressions: ").append(count(Verdict.REGRESSION))
+                    .append(" improvements: ").append(count(Verdict.IMPROVEMENT))
+                    .append(" no change: ").append(count(Verdict.NO_CHANGE))
+                    .append(" insufficient data: ").append(count(Verdict.INSUFFICIENT_DATA))
+                    .append(" missing: ").append(count(Verdict.MISSING_BASELINE) + count(Verdict.MISSING_CANDIDATE))
+                    .append('\n');
+            return text.toString();
+        }
+    }
+
+    private static final Gson GSON = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    private final double alpha;
+
+    private final double minEffect;
+
+    private final int minSamples;
+
+    private final int resamples;
+
+    private final double confidence;
+
+    private final long seed;
+
+    public RegressionDetector() {
+        this(0.01, 0.05, 16, 2000, 0.95, 1);
+    }
+
+    /**
+     * @param alpha      significance level of the Mann-Whitney U test
+     * @param minEffect  smallest relative change of the median reported as regression or improvement
+     * @param minSamples minimum number of sampled inference times of every side
+     * @param resamples  number of bootstrap resamples
+     * @param confidence confidence level of the bootstrap interval
+     * @param seed       seed of the bootstrap, the same inputs always give the same report
+     */
+    public RegressionDetector(double alpha, double minEffect, int minSamples, int resamples, double confidence,
+                              long seed) {
+        this.alpha = alpha;
+        this.minEffect = minEffect;
+        this.minSamples = minSamples;
+        this.resamples = resamples;
+        this.confidence = confidence;
+        this.seed = seed;
+    }
+
+    /**
+     * Compares every configuration of the baseline and the candidate, in the order they first appear.
+     */
+    public Report compare(List<FinalResult> baseline, List<FinalResult> candidate) {
+        Map<String, Comparison> comparisons = new LinkedHashMap<>();
+        Map<String, List<Double>> baselineTimes = group(baseline, comparisons);
+        Map<String, List<Double>> candidateTimes = group(candidate, comparisons);
+        Report report = new Report();
+
+        report.alpha = alpha;
+        report.minEffect = minEffect;
+        report.confidence = confidence;
+        for (Map.Entry<String, Comparison> entry : comparisons.entrySet()) {
+            Comparison comparison = entry.getValue();
+            compare(comparison, toArray(baselineTimes.get(entry.getKey())),
+                    toArray(candidateTimes.get(entry.getKey())));
+            report.comparisons.add(comparison);
+        }
+        return report;
+    }
+
+    private void compare(Comparison comparison, double[] baseline, double[] candidate) {
+        comparison.baselineCount = baseline.length;
+        comparison.candidateCount = candidate.length;
+        if (baseline.length == 0) {
+            comparison.verdict = Verdict.MISSING_BASELINE;
+            return;
+        }
+        if (candidate.length == 0) {
+            comparison.verdict = Verdict.MISSING_CANDIDATE;
+            return;
+        }
+
+        comparison.baselineMedian = median(baseline);
+        comparison.candidateMedian = median(candidate);
+        comparison.medianDelta = comparison.candidateMedian / comparison.baselineMedian - 1;
+        if (baseline.length < minSamples || candidate.length < minSamples) {
+            comparison.verdict = Verdict.INSUFFICIENT_DATA;
+            return;
+        }
+
+        double[] interval = bootstrapMedianDelta(baseline, candidate, resamples, confidence, new Random(seed));
+        comparison.ciLow = interval[0];
+        comparison.ciHigh = interval[1];
+        comparison.pValue = mannWhitneyP(baseline, candidate);
+
+        if (comparison.pValue < alpha && comparison.ciLow > minEffect)
+            comparison.verdict = Verdict.REGRESSION;
+        else if (comparison.pValue < alpha && comparison.ciHigh < -minEffect)
+            comparison.verdict = Verdict.IMPROVEMENT;
+        else
+            comparison.verdict = Verdict.NO_CHANGE;
+    }
+
+    /**
+     * Pools sampled inference times of every configuration and registers configurations not seen yet.
+     */
+    private static Map<String, List<Double>> group(List<FinalResult> results, Map<String, Comparison> comparisons) {
+        Map<String, List<Double>> times = new LinkedHashMap<>();
+
+        for (FinalResult result : results) {
+            String system = describe(result.systemInfo);
+            for (ModelResult modelResult : result.modelResults) {
+                String key = modelResult.modelName + "|" + modelResult.delegate + "|" + modelResult.batchSize
+                        + "|" + modelResult.numThreads + "|" + system;
+                if (!comparisons.containsKey(key)) {
+                    Comparison comparison = new Comparison();
+                    comparison.model = modelResult.modelName;
+                    comparison.device = modelResult.delegate;
+                    comparison.batchSize = modelResult.batchSize;
+                    comparison.numThreads = modelResult.numThreads;
+                    comparison.system = system;
+                    comparisons.put(key, comparison);
+                }
+                List<Double> list = times.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    times.put(key, list);
+                }
+                for (SingleInferenceResult inference : modelResult.results)
+                    list.add(inference.durationMeasured);
+            }
+        }
+        return times;
+    }
+
+    private static String describe(SystemInfo info) {
+        if (info == null)
+            return "unknown";
+        return info.manufacturer + " " + info.model + " " + info.hardware + " " + info.board + " API " + info.apiLevel;
+    }
+
+    private static double[] toArray(List<Double> list) {
+        if (list == null)
+            return new double[0];
+        double[] array = new double[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+    static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sortedMedian(sorted, sorted.length);
+    }
+
+    private static double sortedMedian(double[] sorted, int n) {
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+    }
+
+    /**
+     * Two-sided p-value of the Mann-Whitney U test, normal approximation with tie and continuity correction.
+     */
+    static double mannWhitneyP(double[] a, double[] b) {
+        int n1 = a.length, n2 = b.length, n = n1 + n2;
+        double[] all = new double[n];
+        boolean[] first = new boolean[n];
+        Integer[] order = new Integer[n];
+        double rankSum = 0, ties = 0;
+
+        for (int i = 0; i < n; i++) {
+            all[i] = i < n1 ? a[i] : b[i - n1];
+            first[i] = i < n1;
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(all[x], all[y]));
+
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j + 1 < n && all[order[j + 1]] == all[order[i]])
+                j++;
+            double rank = (i + j) / 2.0 + 1;
+            int size = j - i + 1;
+            ties += (double) size * size * size - size;
+            for (int k = i; k <= j; k++)
+                if (first[order[k]])
+                    rankSum += rank;
+            i = j + 1;
+        }
+
+        double u = rankSum - n1 * (n1 + 1) / 2.0;
+        double mean = n1 * (double) n2 / 2;
+        double sigma = Math.sqrt(n1 * (double) n2 / 12 * ((n + 1) - ties / ((double) n * (n - 1))));
+        if (sigma == 0)
+            return 1;
+        double z = Math.max(0, Math.abs(u - mean) - 0.5) / sigma;
+        return Math.min(1, erfc(z / Math.sqrt(2)));
+    }
+
+    /**
+     * Percentile bootstrap interval of the relative change of the median from a to b.
+     *
+     * @return lower and upper bound
+     */
+    static double[] bootstrapMedianDelta(double[] a, double[] b, int resamples, double confidence, Random random) {
+        double[] deltas = new double[resamples];
+        double[] sampleA = new double[a.length], sampleB = new double[b.length];
+
+        for (int r = 0; r < resamples; r++) {
+            for (int i = 0; i < a.length; i++)
+                sampleA[i] = a[random.nextInt(a.length)];
+            for (int i = 0; i < b.length; i++)
+                sampleB[i] = b[random.nextInt(b.length)];
+            Arrays.sort(sampleA);
+            Arrays.sort(sampleB);
+            deltas[r] = sortedMedian(sampleB, b.length) / sortedMedian(sampleA, a.length) - 1;
+        }
+        Arrays.sort(deltas);
+        int low = (int) Math.floor((1 - confidence) / 2 * (resamples - 1));
+        int high = (int) Math.ceil((1 + confidence) / 2 * (resamples - 1));
+        return new double[]{deltas[low], deltas[high]};
+    }
+
+    /**
+     * Complementary error function, fractional error below 1.2e-7
+     */
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + 0.5 * z);
+        double result = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? result : 2 - result;
+    }
+
+    /**
+     * Reads results from a file with one result per line, either JSON or "id TAB json" of the journal.
+     * Lines which are not valid results are skipped.
+     *
+     * @param file    result file
+     * @param skipped receives the reason of every skipped line
+     */
+    public static List<FinalResult> load(File file, List<String> skipped) throws IOException {
+        List<FinalResult> results = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int start = line.indexOf('{');
+                if (start < 0)
+                    continue;
+                try {
+                    FinalResult result = GSON.fromJson(line.substring(start), FinalResult.class);
+                    if (result != null)
+                        results.add(result);
+                } catch (JsonParseException e) {
+                    skipped.add("Skipped invalid result in " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prints report of two result files, exits with status 1 when a regression was found.
+     * Usage: RegressionDetector baseline.jsonl candidate.jsonl [--json]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionDetector <baseline file> <candidate file> [--json]");
+            System.exit(2);
+        }
+        List<String> skipped = new ArrayList<>();
+        Report report = new RegressionDetector().compare(load(new File(args[0]), skipped),
+                load(new File(args[1]), skipped));
+        for (String line : skipped)
+            System.err.println(line);
+        boolean json = args.length > 2 && args[2].equals("--json");
+
+        System.out.print(json ? new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues()
+                .create().toJson(report) + "\n" : report.toString());
+        System.exit(report.hasRegressions() ? 1 : 0);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Append-only journal of results kept on local storage until they are uploaded.
+ * <p>
+ * Every record is one line "id TAB json" synced to disk before append returns. A separate
+ * cursor file stores offset of the first record which was not acknowledged by the sink yet,
+ * so records survive failed uploads and restarts of the application. When all records are
+ * acknowledged the journal is truncated.
+ */
+public class ResultJournal {
+
+    /**
+     * Records read from the journal together with offset right after the last of them
+     */
+    public static class Batch {
+        public final List<ResultRecord> records;
+
+        final long endOffset;
+
+        Batch(List<ResultRecord> records, long endOffset) {
+            this.records = records;
+            this.endOffset = endOffset;
+        }
+    }
+
+    private final File file;
+
+    private final File cursorFile;
+
+    /**
+     * @param directory directory of the journal, e.g. files dir of the application
+     * @param name      name of the journal file
+     */
+    public ResultJournal(File directory, String name) {
+        file = new File(directory, name);
+        cursorFile = new File(directory, name + ".cursor");
+    }
+
+    /**
+     * Appends record and syncs it to disk.
+     *
+     * @param json result serialized as single line JSON
+     * @return id of the new record
+     */
+    public synchronized String append(String json) throws IOException {
+        String id = UUID.randomUUID().toString();
+        byte[] line = (id + "\t" + json + "\n").getBytes(StandardCharsets.UTF_8);
+
+        try (FileOutputStream output = new FileOutputStream(file, true)) {
+            output.write(line);
+            output.getFD().sync();
+        }
+        return id;
+    }
+
+    /**
+     * Reads records which were not acknowledged yet. Incomplete last line,
+     * e.g. after a crash during append, is skipped.
+     *
+     * @param maxRecords maximum number of records in the batch
+     */
+    public synchronized Batch read(int maxRecords) throws IOException {
+        List<ResultRecord> records = new ArrayList<>();
+        long offset = readCursor();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+
+        if (!file.exists())
+            return new Batch(records, offset);
+        if (offset > file.length()) {
+            // journal was truncated but the cursor was not reset
+            offset = 0;
+            writeCursor(0);
+        }
+
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            skipFully(input, offset);
+            while (records.size() < maxRecords && (b = input.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                offset += line.size() + 1;
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                int tab = text.indexOf('\t');
+                if (tab > 0)
+                    records.add(new ResultRecord(text.substring(0, tab), text.substring(tab + 1)));
+                line.reset();
+            }
+        }
+        return new Batch(records, offset);
+    }
+
+    /**
+     * Marks records of the batch as uploaded. Cursor is reset before the journal is truncated,
+     * a crash in between only makes records upload again under the same ids.
+     */
+    public synchronized void acknowledge(Batch batch) throws IOException {
+        if (batch.endOffset >= file.length()) {
+            writeCursor(0);
+            try (RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+                journal.setLength(0);
+            }
+        } else {
+            writeCursor(batch.endOffset);
+        }
+    }
+
+    /**
+     * Returns true when the journal may contain records which were not acknowledged
+     */
+    public synchronized boolean hasPending() {
+        return file.exists() && file.length() > 0;
+    }
+
+    private long readCursor() throws IOException {
+        if (!cursorFile.exists())
+            return 0;
+        try (InputStream input = new FileInputStream(cursorFile)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[32];
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                content.write(buffer, 0, read);
+            String text = new String(content.toByteArray(), StandardCharsets.UTF_8).trim();
+            return text.isEmpty() ? 0 : Long.parseLong(text);
+        }
+    }
+
+    private void writeCursor(long offset) throws IOException {
+        File tmp = new File(cursorFile.getPath() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(tmp)) {
+            output.write(Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+            output.getFD().sync();
+        }
+        if (!tmp.renameTo(cursorFile))
+            throw new IOException("Could not replace " + cursorFile);
+    }
+
+    private static void skipFully(InputStream input, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = input.skip(bytes);
+            if (skipped <= 0)
+                throw new IOException("Journal is shorter than its cursor");
+            bytes -= skipped;
+        }
+    }
+}
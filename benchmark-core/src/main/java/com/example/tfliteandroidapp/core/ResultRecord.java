@@ -0,0 +1,16 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Single result stored in the journal. Id is unique, so sinks can write
+ * the same record again after a retry without creating duplicates.
+ */
+public class ResultRecord {
+    public final String id;
+
+    public final String json;
+
+    public ResultRecord(String id, String json) {
+        this.id = id;
+        this.json = json;
+    }
+}
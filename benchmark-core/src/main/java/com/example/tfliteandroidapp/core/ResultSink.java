@@ -0,0 +1,17 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.List;
+
+/**
+ * Destination of results drained from the journal by ResultUploader.
+ */
+public interface ResultSink {
+    /**
+     * Writes all records or throws, records are written again on the next attempt.
+     * Called only from the uploader thread.
+     *
+     * @param records batch of journal records
+     * @throws Exception when the batch was not written
+     */
+    void write(List<ResultRecord> records) throws Exception;
+}
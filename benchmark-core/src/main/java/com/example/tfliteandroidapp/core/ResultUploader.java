@@ -0,0 +1,183 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the result journal into a sink on its own background thread.
+ * <p>
+ * Records are written in batches. Failed batch stays in the journal and is retried with
+ * exponential backoff, reason of the last failure is kept and told to the listener. Uploading can
+ * be paused while timed sections of the benchmark run, pause() waits until the batch in flight is
+ * finished so no upload overlaps measurements.
+ */
+public class ResultUploader {
+
+    private static final int DEFAULT_BATCH_SIZE = 20;
+
+    private final ResultJournal journal;
+
+    private final ResultSink sink;
+
+    private final int batchSize;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final Object lock = new Object();
+
+    private long backoffMillis;
+
+    private boolean paused;
+
+    private boolean uploading;
+
+    private boolean scheduled;
+
+    private long uploadedRecords;
+
+    private long failedAttempts;
+
+    private String lastFailure;
+
+    private volatile BenchmarkListener listener = BenchmarkListener.NONE;
+
+    public ResultUploader(ResultJournal journal, ResultSink sink) {
+        this(journal, sink, DEFAULT_BATCH_SIZE, 1000, 5 * 60 * 1000);
+    }
+
+    /**
+     * @param journal              journal to drain
+     * @param sink                 destination of the records
+     * @param batchSize            maximum number of records written at once
+     * @param initialBackoffMillis delay before first retry, doubled after every failure
+     * @param maxBackoffMillis     maximum delay between retries
+     */
+    public ResultUploader(ResultJournal journal, ResultSink sink, int batchSize,
+                          long initialBackoffMillis, long maxBackoffMillis) {
+        this.journal = journal;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        backoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * Schedules upload of pending records. Returns immediately.
+     */
+    public void requestUpload() {
+        schedule(0);
+    }
+
+    /**
+     * Stops starting new batches and waits until the batch in flight is finished.
+     */
+    public void pause() throws InterruptedException {
+        synchronized (lock) {
+            paused = true;
+            while (uploading)
+                lock.wait();
+        }
+    }
+
+    /**
+     * Allows uploading again and schedules pending records.
+     */
+    public void resume() {
+        synchronized (lock) {
+            paused = false;
+        }
+        requestUpload();
+    }
+
+    /**
+     * Sets listener which is told on the uploader thread when a batch could not be uploaded.
+     */
+    public void setListener(BenchmarkListener listener) {
+        this.listener = listener;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public long getUploadedRecords() {
+        synchronized (lock) {
+            return uploadedRecords;
+        }
+    }
+
+    public long getFailedAttempts() {
+        synchronized (lock) {
+            return failedAttempts;
+        }
+    }
+
+    /**
+     * Returns reason of the last failed upload or null when no upload failed
+     */
+    public String getLastFailure() {
+        synchronized (lock) {
+            return lastFailure;
+        }
+    }
+
+    private void schedule(long delayMillis) {
+        synchronized (lock) {
+            if (scheduled || executor.isShutdown())
+                return;
+            scheduled = true;
+        }
+        executor.schedule(this::drain, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            scheduled = false;
+            if (paused)
+                return;
+            uploading = true;
+        }
+
+        boolean more = false;
+        String failure = null;
+        try {
+            ResultJournal.Batch batch = journal.read(batchSize);
+            if (!batch.records.isEmpty())
+                sink.write(batch.records);
+            if (!batch.records.isEmpty() || journal.hasPending())
+                journal.acknowledge(batch);
+            more = batch.records.size() == batchSize;
+            synchronized (lock) {
+                uploadedRecords += batch.records.size();
+            }
+        } catch (Exception e) {
+            failure = e.toString();
+        } finally {
+            synchronized (lock) {
+                uploading = false;
+                lock.notifyAll();
+                if (failure != null) {
+                    failedAttempts++;
+                    lastFailure = failure;
+                }
+            }
+        }
+
+        if (failure != null) {
+            long delay = backoffMillis;
+            backoffMillis = Math.min(maxBackoffMillis, backoffMillis * 2);
+            listener.onMessage("Upload failed, retrying in " + delay + "ms: " + failure);
+            schedule(delay);
+        } else {
+            backoffMillis = initialBackoffMillis;
+            if (more)
+                schedule(0);
+        }
+    }
+}
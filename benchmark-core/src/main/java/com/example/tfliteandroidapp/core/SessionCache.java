@@ -0,0 +1,207 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of inference sessions.
+ * <p>
+ * Sessions are keyed by model, device and thread count. Batch size is not a part of the key,
+ * cached session is resized when a different batch size is requested. Evicted sessions are closed.
+ * Every cache miss records cold start of the session together with Java and native heap it added.
+ */
+public class SessionCache {
+
+    private static final int DEFAULT_MAX_SESSIONS = 16;
+
+    /**
+     * Session together with its current batch size
+     */
+    public static class Entry {
+        public final InferenceSession session;
+
+        int batchSize;
+
+        Entry(InferenceSession session) {
+            this.session = session;
+            this.batchSize = session.getInput().getShape()[0];
+        }
+
+        public void close() {
+            session.close();
+        }
+
+        void resize(int batchSize) {
+            session.resize(batchSize);
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Snapshot of cache counters
+     */
+    public static class Stats {
+        public long hits;
+
+        public long misses;
+
+        public long evictions;
+
+        public long resizes;
+
+        public long modelLoads;
+
+        public long modelLoadTimeNanos;
+
+        public long interpreterInitTimeNanos;
+
+        @Override
+        public String toString() {
+            return "Interpreter cache hits: " + hits + " misses: " + misses + " evictions: " + evictions
+                    + " resizes: " + resizes + " model load: " + modelLoadTimeNanos / 1000000 + "ms"
+                    + " init: " + interpreterInitTimeNanos / 1000000 + "ms";
+        }
+    }
+
+    private final InferenceBackend backend;
+
+    private final MemoryProbe memoryProbe;
+
+    private final LinkedHashMap<String, Entry> sessions;
+
+    private final Stats stats = new Stats();
+
+    private ColdStart lastColdStart;
+
+    public SessionCache(InferenceBackend backend, MemoryProbe memoryProbe) {
+        this(backend, memoryProbe, DEFAULT_MAX_SESSIONS);
+    }
+
+    public SessionCache(InferenceBackend backend, MemoryProbe memoryProbe, final int maxSessions) {
+        this.backend = backend;
+        this.memoryProbe = memoryProbe;
+        sessions = new LinkedHashMap<String, SessionCache.Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SessionCache.Entry> eldest) {
+                if (size() <= maxSessions)
+                    return false;
+                eldest.getValue().close();
+                stats.evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns session of given model for given device with input resized to batchSize.
+     * Creates the session when it is not cached.
+     *
+     * @param model      path of the model
+     * @param device     device used for executing inference
+     * @param numThreads thread count of the session, -1 leaves the default
+     * @param batchSize  requested batch size
+     * @return cached entry
+     * @throws IOException when model could not be loaded
+     */
+    public Entry get(String model, Device device, int numThreads, int batchSize) throws IOException {
+        String key = device + ":" + numThreads + ":" + model;
+        Entry entry = sessions.get(key);
+
+        lastColdStart = null;
+        if (entry == null) {
+            ColdStart coldStart = new ColdStart();
+            long javaHeap = memoryProbe.javaHeapUsed();
+
+            coldStart.nativeHeapBefore = memoryProbe.nativeHeapUsed();
+            stats.misses++;
+            entry = new Entry(backend.open(model, device, numThreads, coldStart));
+            sessions.put(key, entry);
+
+            coldStart.javaHeapBytes = memoryProbe.javaHeapUsed() - javaHeap;
+            coldStart.nativeHeapBytes = memoryProbe.nativeHeapUsed() - coldStart.nativeHeapBefore;
+            if (coldStart.modelLoadNanos > 0)
+                stats.modelLoads++;
+            stats.modelLoadTimeNanos += coldStart.modelLoadNanos;
+            stats.interpreterInitTimeNanos += coldStart.delegateInitNanos + coldStart.interpreterInitNanos;
+            lastColdStart = coldStart;
+        } else {
+            stats.hits++;
+        }
+
+        if (entry.batchSize != batchSize) {
+            entry.resize(batchSize);
+            stats.resizes++;
+        }
+        return entry;
+    }
+
+    /**
+     * Creates new session which is not cached, e.g. one of several sessions of the same model
+     * running in parallel. Caller closes the entry.
+     *
+     * @param model      path of the model
+     * @param device     device used for executing inference
+     * @param numThreads thread count of the session, -1 leaves the default
+     * @param batchSize  requested batch size
+     * @throws IOException when model could not be loaded
+     */
+    public Entry open(String model, Device device, int numThreads, int batchSize) throws IOException {
+        Entry entry = new Entry(backend.open(model, device, numThreads, new ColdStart()));
+
+        if (entry.batchSize != batchSize) {
+            try {
+                entry.resize(batchSize);
+            } catch (RuntimeException e) {
+                // the caller never gets the entry, so nobody else would close it
+                entry.close();
+                throw e;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns cold start of the session returned by the last get() call,
+     * null when the session was cached.
+     */
+    public ColdStart getLastColdStart() {
+        return lastColdStart;
+    }
+
+    /**
+     * Closes all cached sessions. Resources shared by sessions stay in the backend.
+     */
+    public void evictAll() {
+        for (Entry entry : new ArrayList<>(sessions.values())) {
+            entry.close();
+            stats.evictions++;
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Closes all cached sessions and releases resources of the backend.
+     */
+    public void close() {
+        evictAll();
+        backend.clear();
+    }
+
+    public MemoryProbe getMemoryProbe() {
+        return memoryProbe;
+    }
+
+    public Stats getStats() {
+        Stats snapshot = new Stats();
+        snapshot.hits = stats.hits;
+        snapshot.misses = stats.misses;
+        snapshot.evictions = stats.evictions;
+        snapshot.resizes = stats.resizes;
+        snapshot.modelLoads = stats.modelLoads;
+        snapshot.modelLoadTimeNanos = stats.modelLoadTimeNanos;
+        snapshot.interpreterInitTimeNanos = stats.interpreterInitTimeNanos;
+        return snapshot;
+    }
+}
@@ -1,4 +1,4 @@
-package com.example.tfliteandroidapp;
+package com.example.tfliteandroidapp.core;
 
 public class SingleInferenceResult {
 //    public Long durationInterpreter = 0L;
@@ -0,0 +1,208 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records durations of benchmark stages into a preallocated ring buffer.
+ * <p>
+ * Every event is a complete span (stage, start, duration, thread and an integer argument) written
+ * into primitive arrays, so recording does not allocate. When the ring is full the oldest events
+ * are overwritten. Events of the measured loop are recorded only for every sampleInterval-th batch.
+ * Recording is safe from several threads, export must run after all recording threads finished.
+ * Traces are exported in Chrome trace JSON format which Perfetto and chrome://tracing open.
+ */
+public class StageTracer {
+
+    public enum Stage {
+        JOB,
+        MODEL_LOAD,
+        PREPARE_BUFFERS,
+        DATASET,
+        DECODE,
+        PREPROCESS,
+        WARMUP,
+        COPY,
+        INFERENCE,
+        /**
+         * Inference time measured by the runtime, ends together with its INFERENCE span
+         */
+        NATIVE_INFERENCE,
+        POSTPROCESS
+    }
+
+    /**
+     * Tracer which records nothing
+     */
+    public static final StageTracer DISABLED = new StageTracer();
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final boolean enabled;
+
+    private final int mask;
+
+    private final int sampleInterval;
+
+    private final byte[] stages;
+
+    private final long[] starts;
+
+    private final long[] durations;
+
+    private final long[] threads;
+
+    private final String[] threadNames;
+
+    private final int[] args;
+
+    private final AtomicLong next = new AtomicLong();
+
+    private final List<String> jobs = new ArrayList<>();
+
+    private StageTracer() {
+        enabled = false;
+        mask = 0;
+        sampleInterval = Integer.MAX_VALUE;
+        stages = new byte[0];
+        starts = durations = threads = new long[0];
+        threadNames = new String[0];
+        args = new int[0];
+    }
+
+    /**
+     * @param capacity       number of events kept, rounded up to a power of two
+     * @param sampleInterval every sampleInterval-th batch of the measured loop is traced, 1 traces all
+     */
+    public StageTracer(int capacity, int sampleInterval) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+        enabled = true;
+        mask = size - 1;
+        this.sampleInterval = Math.max(1, sampleInterval);
+        stages = new byte[size];
+        starts = new long[size];
+        durations = new long[size];
+        threads = new long[size];
+        threadNames = new String[size];
+        args = new int[size];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns true when stages of the batch with given index should be recorded
+     */
+    public boolean sampled(long batch) {
+        return enabled && batch % sampleInterval == 0;
+    }
+
+    /**
+     * Registers name of a job, JOB spans carry the returned index as their argument.
+     *
+     * @return index of the job, -1 when disabled
+     */
+    public synchronized int beginJob(String name) {
+        if (!enabled)
+            return -1;
+        jobs.add(name);
+        return jobs.size() - 1;
+    }
+
+    /**
+     * Records span of a stage on the current thread.
+     *
+     * @param stage      stage of the span
+     * @param startNanos System.nanoTime() at the beginning
+     * @param endNanos   System.nanoTime() at the end
+     * @param arg        index of batch, image or job, -1 when none
+     */
+    public void record(Stage stage, long startNanos, long endNanos, int arg) {
+        if (!enabled)
+            return;
+        Thread thread = Thread.currentThread();
+        int slot = (int) (next.getAndIncrement() & mask);
+
+        stages[slot] = (byte) stage.ordinal();
+        starts[slot] = startNanos;
+        durations[slot] = endNanos - startNanos;
+        threads[slot] = thread.getId();
+        threadNames[slot] = thread.getName();
+        args[slot] = arg;
+    }
+
+    /**
+     * Returns number of events kept in the ring
+     */
+    public int size() {
+        return (int) Math.min(next.get(), mask + 1L);
+    }
+
+    /**
+     * Returns number of events overwritten because the ring was full
+     */
+    public long getDropped() {
+        return Math.max(0, next.get() - (mask + 1L));
+    }
+
+    /**
+     * Writes kept events as Chrome trace JSON, timestamps are microseconds from the first kept event.
+     */
+    public synchronized void writeChromeTrace(Writer writer) throws IOException {
+        long total = next.get();
+        long first = total - size();
+        long origin = Long.MAX_VALUE;
+        Map<Long, String> names = new HashMap<>();
+        boolean comma = false;
+
+        for (long i = first; i < total; i++)
+            origin = Math.min(origin, starts[(int) (i & mask)]);
+
+        writer.write("{\"displayTimeUnit\":\"ns\",\"otherData\":{\"dropped\":" + getDropped() + "},\"traceEvents\":[");
+        for (long i = first; i < total; i++) {
+            int slot = (int) (i & mask);
+            Stage stage = STAGES[stages[slot]];
+            String name = stage == Stage.JOB && args[slot] >= 0 && args[slot] < jobs.size()
+                    ? jobs.get(args[slot]) : stage.name();
+
+            names.put(threads[slot], threadNames[slot]);
+            if (comma)
+                writer.write(',');
+            comma = true;
+            writer.write(String.format(Locale.US,
+                    "\n{\"name\":%s,\"cat\":\"%s\",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":1,\"tid\":%d,\"args\":{\"arg\":%d}}",
+                    quote(name), stage.name().toLowerCase(Locale.US), (starts[slot] - origin) / 1e3,
+                    durations[slot] / 1e3, threads[slot], args[slot]));
+        }
+        for (Map.Entry<Long, String> thread : names.entrySet()) {
+            if (comma)
+                writer.write(',');
+            comma = true;
+            writer.write("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":" + quote(thread.getValue()) + "}}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                quoted.append('\\').append(c);
+            else if (c < 0x20)
+                quoted.append(String.format(Locale.US, "\\u%04x", (int) c));
+            else
+                quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+}
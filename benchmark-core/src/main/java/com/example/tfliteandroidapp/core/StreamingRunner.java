@@ -0,0 +1,258 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Feeds a stream of frames arriving at a fixed rate to inference, like frames of a camera.
+ * <p>
+ * Frame k arrives at start + k / fps on the clock. Arrived frames wait in a bounded queue, when the
+ * queue is full the oldest waiting frame is dropped, so with depth 1 the newest frame always wins.
+ * Inference takes frames from the queue one after another on the calling thread and waits on the
+ * clock when the queue is empty. Arrival is computed from the clock instead of a producer thread,
+ * so frames do not compete with inference for cores and a manual clock makes runs reproducible.
+ * Latency of a frame is measured from its arrival to the end of its processing, so it includes
+ * the time spent in the queue. Latencies are also grouped into windows of arrival time
+ * to show how latency drifts during a long run.
+ */
+public class StreamingRunner {
+
+    /**
+     * Writes frame with given index into the input buffer
+     */
+    public interface FrameSource {
+        void fill(long frame, ByteBuffer input);
+    }
+
+    /**
+     * Runs inference of the frame in the input buffer and processes its result
+     */
+    public interface Inference {
+        void run(long frame, ByteBuffer input) throws Exception;
+    }
+
+    /**
+     * Frames of one window of arrival time
+     */
+    public static class Window {
+        /**
+         * Start of the window in milliseconds from the start of the stream
+         */
+        public long startMs;
+
+        public long processed;
+
+        public long dropped;
+
+        public double fps;
+
+        /**
+         * Latency from arrival of a frame to its result in nanoseconds
+         */
+        public double p50;
+
+        public double p99;
+
+        private transient LatencyHistogram histogram;
+    }
+
+    /**
+     * Result of one stream
+     */
+    public static class Result {
+        public double targetFps;
+
+        public int queueDepth;
+
+        public long durationNanos;
+
+        public long framesArrived;
+
+        public long framesProcessed;
+
+        /**
+         * Frames replaced in the queue by newer ones or still waiting when the thread was interrupted
+         */
+        public long framesDropped;
+
+        /**
+         * Processed frames per second
+         */
+        public double sustainedFps;
+
+        public double droppedRatio;
+
+        /**
+         * Latency from arrival of a frame to its result
+         */
+        public LatencySummary latency;
+
+        /**
+         * Duration of processing alone, without the time in the queue
+         */
+        public LatencySummary processingLatency;
+
+        public ArrayList<Window> windows = new ArrayList<>();
+
+        /**
+         * Median latency of the last full window relative to the first one, 0 with less than two windows
+         */
+        public double p50Drift;
+
+        /**
+         * Slope of the median latency of windows over time, in milliseconds per minute
+         */
+        public double p50DriftMsPerMinute;
+    }
+
+    private final Clock clock;
+
+    public StreamingRunner(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns source which fills the whole input buffer with a pattern shifted in every frame,
+     * uint8 values cover 0 to 255 and float values -1 to 1. Does not allocate.
+     */
+    public static FrameSource syntheticFrames(final TensorType type) {
+        return (frame, input) -> {
+            int shift = (int) (frame * 17);
+            input.clear();
+            if (type == TensorType.UINT8) {
+                for (int i = 0; input.hasRemaining(); i++)
+                    input.put((byte) (i * 31 + shift));
+            } else {
+                for (int i = 0; input.remaining() >= 4; i++)
+                    input.putFloat(((i * 31 + shift) & 0xff) / 127.5f - 1);
+            }
+            input.rewind();
+        };
+    }
+
+    /**
+     * Streams frames for the given duration.
+     *
+     * @param source        writes frames into the input buffer
+     * @param input         input buffer of inference
+     * @param inference     processing of one frame
+     * @param fps           rate at which frames arrive
+     * @param queueDepth    maximum number of frames waiting for inference
+     * @param durationNanos frames arrive during this time, frames still waiting after it are processed
+     * @param windowNanos   length of the windows of latency drift
+     * @throws Exception first exception thrown by inference
+     */
+    public Result run(FrameSource source, ByteBuffer input, Inference inference, double fps, int queueDepth,
+                      long durationNanos, long windowNanos) throws Exception {
+        final double period = 1e9 / fps;
+        final long frames = (long) Math.ceil(durationNanos / period);
+        long[] queue = new long[Math.max(1, queueDepth)];
+        int head = 0, size = 0;
+        long next = 0, arrived, frame, arrival, startTime, endTime, doneTime;
+        LatencyHistogram latency = new LatencyHistogram(), processing = new LatencyHistogram();
+        Result result = new Result();
+
+        result.targetFps = fps;
+        result.queueDepth = queue.length;
+        startTime = clock.nanoTime();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            arrived = Math.min(frames, (long) Math.floor((clock.nanoTime() - startTime) / period) + 1);
+            if (arrived - next > queue.length) {
+                // frames which would be pushed out of the queue before inference takes them
+                result.framesDropped += arrived - queue.length - next + Math.min(size, queue.length);
+                size = 0;
+                next = arrived - queue.length;
+            }
+            for (; next < arrived; next++) {
+                if (size == queue.length) {
+                    head = (head + 1) % queue.length;
+                    size--;
+                    result.framesDropped++;
+                }
+                queue[(head + size) % queue.length] = next;
+                size++;
+            }
+
+            if (size == 0) {
+                if (next >= frames)
+                    break;
+                clock.sleepUntil(startTime + (long) Math.ceil(next * period));
+                continue;
+            }
+
+            frame = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            arrival = startTime + (long) Math.ceil(frame * period);
+            endTime = clock.nanoTime();
+            source.fill(frame, input);
+            inference.run(frame, input);
+            doneTime = clock.nanoTime();
+
+            latency.record(doneTime - arrival);
+            processing.record(doneTime - endTime);
+            window(result, arrival - startTime, windowNanos).histogram.record(doneTime - arrival);
+            result.framesProcessed++;
+        }
+        result.framesDropped += size;
+        if (next > 0)
+            window(result, (long) Math.ceil((next - 1) * period), windowNanos);
+
+        result.durationNanos = clock.nanoTime() - startTime;
+        result.framesArrived = next;
+        result.sustainedFps = result.durationNanos > 0 ? result.framesProcessed * 1e9 / result.durationNanos : 0;
+        result.droppedRatio = next > 0 ? (double) result.framesDropped / next : 0;
+        result.latency = latency.getSummary();
+        result.processingLatency = processing.getSummary();
+        finishWindows(result, period, windowNanos);
+        return result;
+    }
+
+    private static Window window(Result result, long offsetNanos, long windowNanos) {
+        int index = (int) (offsetNanos / windowNanos);
+        while (result.windows.size() <= index) {
+            Window window = new Window();
+            window.startMs = result.windows.size() * windowNanos / 1000000;
+            window.histogram = new LatencyHistogram();
+            result.windows.add(window);
+        }
+        return result.windows.get(index);
+    }
+
+    /**
+     * Fills statistics of windows. Dropped frames of a window are the frames which arrived
+     * in it minus the processed ones, the last window is left out of drift when it is partial.
+     */
+    private static void finishWindows(Result result, double period, long windowNanos) {
+        long frames = result.framesArrived;
+        ArrayList<Window> full = new ArrayList<>();
+        double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+
+        for (Window window : result.windows) {
+            long start = window.startMs * 1000000, end = start + windowNanos;
+            long arrived = Math.min(frames, (long) Math.ceil(end / period)) - (long) Math.ceil(start / period);
+            LatencySummary summary = window.histogram.getSummary();
+
+            window.processed = summary.count;
+            window.dropped = Math.max(0, arrived - window.processed);
+            window.fps = window.processed * 1e9 / windowNanos;
+            window.p50 = summary.p50;
+            window.p99 = summary.p99;
+            if (Math.ceil(end / period) <= frames && window.processed > 0)
+                full.add(window);
+        }
+
+        if (full.size() < 2)
+            return;
+        result.p50Drift = full.get(full.size() - 1).p50 / full.get(0).p50 - 1;
+        for (Window window : full) {
+            double minutes = window.startMs / 60000.0, ms = window.p50 / 1e6;
+            sumX += minutes;
+            sumY += ms;
+            sumXY += minutes * ms;
+            sumXX += minutes * minutes;
+        }
+        result.p50DriftMsPerMinute = (full.size() * sumXY - sumX * sumY) / (full.size() * sumXX - sumX * sumX);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Data set of seeded random images for headless runs
+ */
+public class SyntheticImageSource implements ImageSource {
+
+    private final int count, width, height;
+
+    private final long seed;
+
+    public SyntheticImageSource(int count, int width, int height, long seed) {
+        this.count = count;
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    @Override
+    public List<String> list() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            names.add("synthetic_" + i + ".png");
+        return names;
+    }
+
+    @Override
+    public Image decode(String name) {
+        int index = Integer.parseInt(name.substring(name.indexOf('_') + 1, name.indexOf('.')));
+        Random random = new Random(seed * 31 + index);
+        int[] pixels = new int[width * height];
+
+        for (int i = 0; i < pixels.length; i++)
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        return new Image(width, height, pixels);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Description of the device running the benchmark, filled by the platform adapter
+ */
+public class SystemInfo {
+    public String manufacturer;
+
+    public String model;
+
+    public String hardware;
+
+    public String board;
+
+    public Integer apiLevel;
+
+    /**
+     * Returns description of the JVM host, used when the engine runs outside of Android
+     */
+    public static SystemInfo ofJvm() {
+        SystemInfo info = new SystemInfo();
+        info.manufacturer = System.getProperty("java.vendor");
+        info.model = System.getProperty("os.name") + " " + System.getProperty("os.version");
+        info.hardware = System.getProperty("os.arch");
+        info.board = "jvm";
+        return info;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.tfliteandroidapp.core;
+
+import java.util.Arrays;
+
+/**
+ * Shape, element type and quantization of a tensor of an inference session
+ */
+public final class TensorInfo {
+    private final int[] shape;
+
+    private final TensorType type;
+
+    private final float scale;
+
+    private final int zeroPoint;
+
+    public TensorInfo(int[] shape, TensorType type) {
+        this(shape, type, 0.0f, 0);
+    }
+
+    /**
+     * @param scale     quantization scale, real value is scale * (value - zeroPoint), 0 when not quantized
+     * @param zeroPoint quantization zero point
+     */
+    public TensorInfo(int[] shape, TensorType type, float scale, int zeroPoint) {
+        this.shape = shape.clone();
+        this.type = type;
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+    }
+
+    /**
+     * Returns copy of the shape, first dimension is the batch size
+     */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    public TensorType getType() {
+        return type;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getZeroPoint() {
+        return zeroPoint;
+    }
+
+    public boolean isQuantized() {
+        return scale != 0.0f;
+    }
+
+    public int getNumElements() {
+        int elements = 1;
+        for (int dimension : shape)
+            elements *= dimension;
+        return elements;
+    }
+
+    public int getByteSize() {
+        return getNumElements() * type.byteSize();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(shape) + " " + type + (isQuantized() ? " scale: " + scale + " zero point: " + zeroPoint : "");
+    }
+}
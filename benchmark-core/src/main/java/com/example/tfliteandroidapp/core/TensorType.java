@@ -0,0 +1,19 @@
+package com.example.tfliteandroidapp.core;
+
+/**
+ * Element type of input and output tensors supported by the engine
+ */
+public enum TensorType {
+    FLOAT32(4),
+    UINT8(1);
+
+    private final int byteSize;
+
+    TensorType(int byteSize) {
+        this.byteSize = byteSize;
+    }
+
+    public int byteSize() {
+        return byteSize;
+    }
+}
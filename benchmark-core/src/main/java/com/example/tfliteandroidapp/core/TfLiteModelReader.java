@@ -0,0 +1,183 @@
+package com.example.tfliteandroidapp.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Reads tensors and operators of a .tflite flatbuffer without the TFLite runtime.
+ * <p>
+ * Only tables of the schema which describe the main subgraph are visited, weights in buffers
+ * are never touched. Field indices follow schema.fbs of TensorFlow Lite.
+ */
+public final class TfLiteModelReader {
+
+    private static final String[] TENSOR_TYPES = {"FLOAT32", "FLOAT16", "INT32", "UINT8", "INT64", "STRING",
+            "BOOL", "INT16", "COMPLEX64", "INT8", "FLOAT64"};
+
+    private static final String[] BUILTIN_OPS = {"ADD", "AVERAGE_POOL_2D", "CONCATENATION", "CONV_2D",
+            "DEPTHWISE_CONV_2D", "DEPTH_TO_SPACE", "DEQUANTIZE", "EMBEDDING_LOOKUP", "FLOOR", "FULLY_CONNECTED",
+            "HASHTABLE_LOOKUP", "L2_NORMALIZATION", "L2_POOL_2D", "LOCAL_RESPONSE_NORMALIZATION", "LOGISTIC",
+            "LSH_PROJECTION", "LSTM", "MAX_POOL_2D", "MUL", "RELU", "RELU_N1_TO_1", "RELU6", "RESHAPE",
+            "RESIZE_BILINEAR", "RNN", "SOFTMAX", "SPACE_TO_DEPTH", "SVDF", "TANH", "CONCAT_EMBEDDINGS",
+            "SKIP_GRAM", "CALL", "CUSTOM", "EMBEDDING_LOOKUP_SPARSE", "PAD", "UNIDIRECTIONAL_SEQUENCE_RNN",
+            "GATHER", "BATCH_TO_SPACE_ND", "SPACE_TO_BATCH_ND", "TRANSPOSE", "MEAN", "SUB", "DIV", "SQUEEZE",
+            "UNIDIRECTIONAL_SEQUENCE_LSTM", "STRIDED_SLICE", "BIDIRECTIONAL_SEQUENCE_RNN", "EXP", "TOPK_V2",
+            "SPLIT", "LOG_SOFTMAX", "DELEGATE", "BIDIRECTIONAL_SEQUENCE_LSTM", "CAST", "PRELU", "MAXIMUM",
+            "ARG_MAX", "MINIMUM", "LESS", "NEG", "PADV2", "GREATER", "GREATER_EQUAL", "LESS_EQUAL", "SELECT",
+            "SLICE", "SIN", "TRANSPOSE_CONV", "SPARSE_TO_DENSE", "TILE", "EXPAND_DIMS", "EQUAL", "NOT_EQUAL",
+            "LOG", "SUM", "SQRT", "RSQRT", "SHAPE", "POW", "ARG_MIN", "FAKE_QUANT", "REDUCE_PROD", "REDUCE_MAX",
+            "PACK", "LOGICAL_OR", "ONE_HOT", "LOGICAL_AND", "LOGICAL_NOT", "UNPACK", "REDUCE_MIN", "FLOOR_DIV",
+            "REDUCE_ANY", "SQUARE", "ZEROS_LIKE", "FILL", "FLOOR_MOD", "RANGE", "RESIZE_NEAREST_NEIGHBOR",
+            "LEAKY_RELU", "SQUARED_DIFFERENCE", "MIRROR_PAD", "ABS", "SPLIT_V", "UNIQUE", "CEIL", "REVERSE_V2",
+            "ADD_N", "GATHER_ND", "COS", "WHERE", "RANK", "ELU", "REVERSE_SEQUENCE", "MATRIX_DIAG", "QUANTIZE",
+            "MATRIX_SET_DIAG", "ROUND", "HARD_SWISH", "IF", "WHILE", "NON_MAX_SUPPRESSION_V4",
+            "NON_MAX_SUPPRESSION_V5", "SCATTER_ND", "SELECT_V2", "DENSIFY", "SEGMENT_SUM", "BATCH_MATMUL"};
+
+    private static final int CUSTOM = 32;
+
+    private final ByteBuffer buffer;
+
+    private TfLiteModelReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads metadata of the model, size and crc32 are left for the caller.
+     *
+     * @param model whole .tflite file, position is not changed
+     * @throws IOException when the buffer is not a valid TFLite model
+     */
+    public static ModelInfo read(ByteBuffer model) throws IOException {
+        ByteBuffer buffer = model.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.clear();
+        if (buffer.capacity() < 8 || buffer.get(4) != 'T' || buffer.get(5) != 'F' || buffer.get(6) != 'L'
+                || buffer.get(7) != '3')
+            throw new IOException("Not a TFLite model");
+        try {
+            return new TfLiteModelReader(buffer).readModel();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Malformed TFLite model", e);
+        }
+    }
+
+    private ModelInfo readModel() {
+        ModelInfo info = new ModelInfo();
+        int model = buffer.getInt(0);
+        int opcodes = field(model, 1), subgraphs = field(model, 2);
+        List<String> codes = new ArrayList<>();
+        TreeSet<String> ops = new TreeSet<>(), customOps = new TreeSet<>();
+
+        info.schemaVersion = fieldInt(model, 0);
+        info.description = string(field(model, 3));
+
+        for (int i = 0; opcodes != 0 && i < length(opcodes); i++) {
+            int opcode = element(opcodes, i);
+            int code = Math.max(fieldByte(opcode, 0), fieldInt(opcode, 3));
+            codes.add(code == CUSTOM ? "CUSTOM:" + string(field(opcode, 1))
+                    : code < BUILTIN_OPS.length ? BUILTIN_OPS[code] : "BUILTIN_" + code);
+        }
+
+        if (subgraphs != 0 && length(subgraphs) > 0) {
+            int subgraph = element(subgraphs, 0);
+            int tensors = field(subgraph, 0), operators = field(subgraph, 3);
+
+            for (int index : ints(field(subgraph, 1)))
+                info.inputs.add(tensor(element(tensors, index)));
+            for (int index : ints(field(subgraph, 2)))
+                info.outputs.add(tensor(element(tensors, index)));
+            for (int i = 0; operators != 0 && i < length(operators); i++) {
+                String code = codes.get(fieldInt(element(operators, i), 0));
+                if (code.startsWith("CUSTOM:"))
+                    customOps.add(code.substring("CUSTOM:".length()));
+                else
+                    ops.add(code);
+            }
+        }
+        info.ops.addAll(ops);
+        info.customOps.addAll(customOps);
+        return info;
+    }
+
+    private ModelInfo.Tensor tensor(int table) {
+        ModelInfo.Tensor tensor = new ModelInfo.Tensor();
+        int type = fieldByte(table, 1), quantization = field(table, 4);
+
+        tensor.shape = ints(field(table, 0));
+        tensor.type = type < TENSOR_TYPES.length ? TENSOR_TYPES[type] : "TYPE_" + type;
+        tensor.name = string(field(table, 3));
+        if (quantization != 0) {
+            int scales = field(quantization, 2), zeroPoints = field(quantization, 3);
+            if (scales != 0 && length(scales) > 0)
+                tensor.scale = buffer.getFloat(scales + 4);
+            if (zeroPoints != 0 && length(zeroPoints) > 0)
+                tensor.zeroPoint = buffer.getLong(zeroPoints + 4);
+        }
+        return tensor;
+    }
+
+    /**
+     * Returns position of the field inside the table, 0 when the field is absent
+     */
+    private int slot(int table, int field) {
+        int vtable = table - buffer.getInt(table);
+        int vtableSize = buffer.getShort(vtable) & 0xffff;
+        int offset = 4 + 2 * field < vtableSize ? buffer.getShort(vtable + 4 + 2 * field) & 0xffff : 0;
+        return offset == 0 ? 0 : table + offset;
+    }
+
+    /**
+     * Returns position of table, vector or string referenced by the field, 0 when the field is absent
+     */
+    private int field(int table, int field) {
+        int slot = slot(table, field);
+        return slot == 0 ? 0 : slot + buffer.getInt(slot);
+    }
+
+    private int fieldInt(int table, int field) {
+        int slot = slot(table, field);
+        return slot == 0 ? 0 : buffer.getInt(slot);
+    }
+
+    private int fieldByte(int table, int field) {
+        int slot = slot(table, field);
+        return slot == 0 ? 0 : buffer.get(slot);
+    }
+
+    private int length(int vector) {
+        int length = buffer.getInt(vector);
+        if (length < 0 || length > buffer.capacity() - vector)
+            throw new IndexOutOfBoundsException("Length " + length + " of vector at " + vector);
+        return length;
+    }
+
+    /**
+     * Returns position of the table at index of a vector of tables
+     */
+    private int element(int vector, int index) {
+        int position = vector + 4 + 4 * index;
+        if (index < 0 || index >= length(vector))
+            throw new IndexOutOfBoundsException("Element " + index + " of vector at " + vector);
+        return position + buffer.getInt(position);
+    }
+
+    private int[] ints(int vector) {
+        int[] values = new int[vector == 0 ? 0 : length(vector)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = buffer.getInt(vector + 4 + 4 * i);
+        return values;
+    }
+
+    private String string(int position) {
+        if (position == 0)
+            return null;
+        byte[] bytes = new byte[length(position)];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(position + 4 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
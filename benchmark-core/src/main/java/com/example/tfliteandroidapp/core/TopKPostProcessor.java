@@ -0,0 +1,152 @@
+package com.example.tfliteandroidapp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds K best classes of every sample in batched classification output.
+ * <p>
+ * Works directly on output buffer of float or uint8 scores with a fixed size heap of
+ * primitives. Quantized scores are compared raw and only the K winners are dequantized.
+ */
+public class TopKPostProcessor {
+
+    private final int k;
+
+    private final int numClasses;
+
+    /**
+     * Indices and scores of K best classes of every sample, sorted from the best
+     */
+    private final int[] indices;
+
+    private final float[] scores;
+
+    /**
+     * Min heap of current sample, root is the weakest of K best classes
+     */
+    private final int[] heapIndices;
+
+    private final float[] heapValues;
+
+    /**
+     * @param k            number of best classes
+     * @param numClasses   number of classes in output of a single sample
+     * @param maxBatchSize largest supported batch size
+     */
+    public TopKPostProcessor(int k, int numClasses, int maxBatchSize) {
+        this.k = Math.min(k, numClasses);
+        this.numClasses = numClasses;
+        indices = new int[maxBatchSize * this.k];
+        scores = new float[maxBatchSize * this.k];
+        heapIndices = new int[this.k];
+        heapValues = new float[this.k];
+    }
+
+    /**
+     * Finds K best classes of float output.
+     *
+     * @param output    float scores of batchSize samples, position is not changed
+     * @param batchSize number of samples in output
+     */
+    public void processFloat(ByteBuffer output, int batchSize) {
+        process(output, batchSize, false, 1.0f, 0);
+    }
+
+    /**
+     * Finds K best classes of uint8 output, dequantizes only the winners.
+     *
+     * @param output    uint8 scores of batchSize samples, position is not changed
+     * @param batchSize number of samples in output
+     * @param scale     quantization scale of output tensor
+     * @param zeroPoint quantization zero point of output tensor
+     */
+    public void processQuantized(ByteBuffer output, int batchSize, float scale, int zeroPoint) {
+        process(output, batchSize, true, scale, zeroPoint);
+    }
+
+    /**
+     * Returns class index of given rank, rank 0 is the best class.
+     */
+    public int getIndex(int sample, int rank) {
+        return indices[sample * k + rank];
+    }
+
+    public float getScore(int sample, int rank) {
+        return scores[sample * k + rank];
+    }
+
+    private void process(ByteBuffer output, int batchSize, boolean quantized, float scale, int zeroPoint) {
+        int sample, i, offset, base = output.position();
+        float value;
+
+        for (sample = 0; sample < batchSize; sample++) {
+            int size = 0;
+            offset = sample * numClasses;
+            for (i = 0; i < numClasses; i++) {
+                if (quantized)
+                    value = output.get(base + offset + i) & 0xFF;
+                else
+                    value = output.getFloat(base + (offset + i) * 4);
+
+                if (size < k) {
+                    heapIndices[size] = i;
+                    heapValues[size] = value;
+                    siftUp(size++);
+                } else if (value > heapValues[0]) {
+                    heapIndices[0] = i;
+                    heapValues[0] = value;
+                    siftDown(0, k);
+                }
+            }
+
+            offset = sample * k;
+            for (i = k - 1; i >= 0; i--) {
+                indices[offset + i] = heapIndices[0];
+                scores[offset + i] = quantized ? scale * (heapValues[0] - zeroPoint) : heapValues[0];
+                heapIndices[0] = heapIndices[i];
+                heapValues[0] = heapValues[i];
+                siftDown(0, i);
+            }
+        }
+    }
+
+    /**
+     * Element a is weaker than b when it has lower score, ties prefer lower class index.
+     */
+    private boolean weaker(int a, int b) {
+        return heapValues[a] < heapValues[b]
+                || (heapValues[a] == heapValues[b] && heapIndices[a] > heapIndices[b]);
+    }
+
+    private void siftUp(int i) {
+        int parent;
+        while (i > 0) {
+            parent = (i - 1) / 2;
+            if (!weaker(i, parent))
+                break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int size) {
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && weaker(child + 1, child))
+                child++;
+            if (!weaker(child, i))
+                break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = heapIndices[a];
+        float value = heapValues[a];
+        heapIndices[a] = heapIndices[b];
+        heapValues[a] = heapValues[b];
+        heapIndices[b] = index;
+        heapValues[b] = value;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Best interpreter configurations found by the auto-tuner, stored as JSON on local storage.
+ * Keyed by device and model name, so it can be loaded by later runs and by the application.
+ */
+public class TuningProfile {
+
+    /**
+     * Which winner of a model later runs use
+     */
+    public enum Goal {
+        LATENCY,
+        THROUGHPUT
+    }
+
+    /**
+     * Tuned configuration, times in milliseconds, throughput in images per second
+     */
+    public static class Config {
+        public int numThreads;
+
+        public int batchSize;
+
+        public long inferences;
+
+        public double p50;
+
+        public double p99;
+
+        public double throughput;
+
+        /**
+         * False when no candidate met the latency SLO and the best of the violating ones was chosen
+         */
+        public boolean meetsSlo;
+    }
+
+    /**
+     * Winners of one model on one device
+     */
+    public static class ModelProfile {
+        /**
+         * Configuration with the lowest median batch latency
+         */
+        public Config latency;
+
+        /**
+         * Configuration with the highest throughput under the SLO
+         */
+        public Config throughput;
+
+        public double latencySloMs;
+
+        public long tunedAt;
+    }
+
+    public HashMap<String, ModelProfile> models = new HashMap<>();
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+
+    public ModelProfile get(Device device, String modelName) {
+        return models.get(key(device, modelName));
+    }
+
+    /**
+     * Returns tuned configuration of the model on the device for the goal, null when it was not tuned
+     */
+    public Config getConfig(Device device, String modelName, Goal goal) {
+        ModelProfile profile = get(device, modelName);
+        if (profile == null)
+            return null;
+        return goal == Goal.THROUGHPUT && profile.throughput != null ? profile.throughput : profile.latency;
+    }
+
+    public void put(Device device, String modelName, ModelProfile profile) {
+        models.put(key(device, modelName), profile);
+    }
+
+    /**
+     * Loads profile from the file, returns empty profile when the file does not exist.
+     */
+    public static TuningProfile load(File file) throws IOException {
+        TuningProfile profile = null;
+
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                profile = GSON.fromJson(reader, TuningProfile.class);
+            }
+        }
+        return profile != null ? profile : new TuningProfile();
+    }
+
+    /**
+     * Writes profile to a temporary file and renames it, so the previous profile survives a crash.
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+
+        try (FileOutputStream output = new FileOutputStream(tmp)) {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            GSON.toJson(this, writer);
+            writer.flush();
+            output.getFD().sync();
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Could not replace " + file);
+    }
+
+    private static String key(Device device, String modelName) {
+        return device + ":" + modelName;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AutoTunerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Batch latency 10ms split among threads up to 4 plus 2ms per image, batch 32 fails
+     */
+    private final Map<String, Integer> measured = new HashMap<>();
+
+    private final AutoTuner.Measurer measurer = (numThreads, batchSize, inferences, histogram) -> {
+        if (batchSize == 32)
+            throw new IllegalArgumentException("batch not supported");
+        measured.merge(numThreads + "/" + batchSize, inferences, Integer::sum);
+        for (int i = 0; i < inferences; i++)
+            histogram.record(10000000L / Math.min(numThreads, 4) + 2000000L * batchSize);
+    };
+
+    @Test
+    public void tune_findsLatencyAndThroughputOptimum() {
+        AutoTuner tuner = new AutoTuner(measurer, Arrays.asList(1, 2, 4, 8), Arrays.asList(1, 4, 16, 32), 0, 4);
+
+        TuningProfile.Config latency = tuner.tuneLatency();
+        TuningProfile.Config throughput = tuner.tuneThroughput();
+
+        assertEquals(1, latency.batchSize);
+        assertTrue(latency.numThreads >= 4);
+        assertEquals(16, throughput.batchSize);
+        assertTrue(throughput.numThreads >= 4);
+        assertTrue(throughput.meetsSlo);
+        // pruned candidates keep the inferences of the first rung
+        assertEquals(Integer.valueOf(4), measured.get("1/4"));
+        // exhaustive search would measure all 12 runnable candidates as long as the winner
+        assertTrue(tuner.getMeasuredInferences() < 12 * throughput.inferences);
+    }
+
+    @Test
+    public void tune_prefersConfigurationsMeetingSlo() {
+        // batch 16 takes at least 34.5ms, batch 4 at most 18ms
+        AutoTuner tuner = new AutoTuner(measurer, Arrays.asList(1, 4), Arrays.asList(1, 4, 16), 20000000L, 4);
+
+        TuningProfile.Config throughput = tuner.tuneThroughput();
+
+        assertEquals(4, throughput.batchSize);
+        assertEquals(4, throughput.numThreads);
+        assertTrue(throughput.meetsSlo);
+    }
+
+    @Test
+    public void profile_survivesSaveAndLoad() throws Exception {
+        File file = new File(folder.getRoot(), "tuning_profile.json");
+        TuningProfile profile = TuningProfile.load(file);
+        TuningProfile.ModelProfile modelProfile = new TuningProfile.ModelProfile();
+        modelProfile.latency = new AutoTuner(measurer, Arrays.asList(1, 2), Arrays.asList(1), 0, 2).tuneLatency();
+        profile.put(Device.CPU, "mobilenet_v1_1.0_224", modelProfile);
+        profile.save(file);
+
+        TuningProfile loaded = TuningProfile.load(file);
+
+        assertEquals(2, loaded.get(Device.CPU, "mobilenet_v1_1.0_224").latency.numThreads);
+        assertNull(loaded.get(Device.GPU, "mobilenet_v1_1.0_224"));
+    }
+}
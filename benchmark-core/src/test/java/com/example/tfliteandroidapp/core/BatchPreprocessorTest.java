@@ -0,0 +1,93 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares tensors written by parallel workers with tensors of images processed one after another.
+ */
+public class BatchPreprocessorTest {
+
+    private static int[][] randomImages(int count, int width, int height) {
+        Random random = new Random(count);
+        int[][] images = new int[count][width * height];
+        for (int[] pixels : images)
+            for (int i = 0; i < pixels.length; i++)
+                pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        return images;
+    }
+
+    private static ByteBuffer sequential(ImagePreprocessor preprocessor, int[][] images) {
+        ByteBuffer output = ByteBuffer.allocateDirect(preprocessor.getOutputSize() * images.length)
+                .order(ByteOrder.nativeOrder());
+        for (int[] pixels : images)
+            preprocessor.process(pixels, output);
+        output.rewind();
+        return output;
+    }
+
+    private static ByteBuffer parallel(BatchPreprocessor batchPreprocessor, ImagePreprocessor preprocessor, int[][] images) {
+        ImagePreprocessor[] preprocessors = new ImagePreprocessor[images.length];
+        ByteBuffer output = ByteBuffer.allocateDirect(preprocessor.getOutputSize() * images.length)
+                .order(ByteOrder.nativeOrder());
+        for (int i = 0; i < images.length; i++)
+            preprocessors[i] = preprocessor;
+        batchPreprocessor.process(preprocessors, images, output, preprocessor.getOutputSize());
+        assertEquals(0, output.position());
+        return output;
+    }
+
+    @Test
+    public void batch_matchesSequentialOutput() {
+        BatchPreprocessor batchPreprocessor = new BatchPreprocessor(4);
+        int[][] images = randomImages(16, 320, 240);
+        try {
+            for (ImagePreprocessor.OutputType type : ImagePreprocessor.OutputType.values()) {
+                for (ImagePreprocessor.Sampling sampling : ImagePreprocessor.Sampling.values()) {
+                    ImagePreprocessor preprocessor = new ImagePreprocessor(320, 240, 96, 96, type, 127.5f, 127.5f, sampling);
+                    assertEquals(type + " " + sampling, sequential(preprocessor, images),
+                            parallel(batchPreprocessor, preprocessor, images));
+                }
+            }
+        } finally {
+            batchPreprocessor.shutdown();
+        }
+    }
+
+    @Test
+    public void singleImage_splitIntoRowTiles() {
+        BatchPreprocessor batchPreprocessor = new BatchPreprocessor(4);
+        int[][] images = randomImages(1, 640, 480);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(640, 480, 224, 224,
+                ImagePreprocessor.OutputType.UINT8, 0, 1, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+        StageTracer tracer = new StageTracer(64, 1);
+        try {
+            batchPreprocessor.setTracer(tracer);
+            assertEquals(sequential(preprocessor, images), parallel(batchPreprocessor, preprocessor, images));
+            assertEquals(4, tracer.size());
+            assertTrue(batchPreprocessor.getWorkNanos() > 0);
+            assertTrue(batchPreprocessor.getWallNanos() > 0);
+        } finally {
+            batchPreprocessor.shutdown();
+        }
+    }
+
+    @Test
+    public void singleWorker_runsOnCallingThread() {
+        BatchPreprocessor batchPreprocessor = new BatchPreprocessor(1);
+        int[][] images = randomImages(3, 100, 80);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(100, 80, 32, 32,
+                ImagePreprocessor.OutputType.FLOAT32, 0, 255, ImagePreprocessor.Sampling.BILINEAR);
+        StageTracer tracer = new StageTracer(64, 1);
+
+        batchPreprocessor.setTracer(tracer);
+        assertEquals(sequential(preprocessor, images), parallel(batchPreprocessor, preprocessor, images));
+        assertEquals(3, tracer.size());
+        assertEquals(1, batchPreprocessor.getWorkers());
+    }
+}
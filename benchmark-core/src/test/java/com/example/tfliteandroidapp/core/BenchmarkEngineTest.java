@@ -0,0 +1,207 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class BenchmarkEngineTest {
+
+    private static final BenchmarkPlanner.ModelLister LISTER = dir -> Arrays.asList(
+            "mobilenet_v1_1.0_224.tflite", "mobilenet_v1_1.0_224_quant.tflite");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryResultSink sink = new InMemoryResultSink();
+
+    private ResultUploader uploader;
+
+    private BenchmarkPlan plan(String json) {
+        return BenchmarkPlan.fromJson("{\"modelFamilies\":[\"mobilenet_v1\"],\"devices\":[\"CPU\"],"
+                + "\"samples\":8,\"warmup\":2,\"targetMedianCi\":0," + json + "}");
+    }
+
+    private BenchmarkEngine engine(FakeInferenceBackend backend, ResultJournal journal) {
+        uploader = new ResultUploader(journal, sink);
+        return new BenchmarkEngine(new SessionCache(backend, MemoryProbe.JVM),
+                new SyntheticImageSource(8, 32, 24, 1), journal, uploader);
+    }
+
+    @Test
+    public void run_measuresEveryJobWithFakeBackend() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.FLOAT32, 10,
+                100000, 50000, 10000, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        List<FinalResult> results = engine(backend, journal).run(plan("\"batchSizes\":[1,4]"), LISTER);
+
+        assertEquals(2, results.size());
+        for (FinalResult result : results) {
+            assertEquals(2, result.modelResults.size());
+            for (ModelResult model : result.modelResults) {
+                assertEquals(8 / model.batchSize, model.iterations);
+                assertEquals(2, model.warmupIterations);
+                assertTrue(model.latency.p50 >= 100000 + 50000 * model.batchSize);
+            }
+        }
+        assertNotNull(results.get(0).modelResults.get(0).coldStart);
+        assertNull(results.get(1).modelResults.get(0).coldStart);
+        assertEquals(2, backend.getOpened());
+        // waits for upload in flight, every result is either pending or uploaded
+        uploader.pause();
+        assertEquals(2, journal.read(10).records.size() + sink.getRecords().size());
+    }
+
+    @Test
+    public void run_tuningSavesProfile() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.UINT8, 10,
+                100000, 20000, 0, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        File profileFile = new File(folder.getRoot(), "tuning_profile.json");
+        BenchmarkEngine engine = engine(backend, journal);
+
+        engine.setTuningProfileFile(profileFile);
+        engine.run(plan("\"tune\":true,\"tuneThreads\":[1,2],\"tuneBatchSizes\":[1,2]"), LISTER);
+
+        TuningProfile profile = TuningProfile.load(profileFile);
+        assertEquals(2, profile.models.size());
+        assertEquals(1, profile.models.get("CPU:mobilenet_v1_1.0_224").latency.batchSize);
+        uploader.pause();
+        assertEquals(0, journal.read(10).records.size() + sink.getRecords().size());
+    }
+
+    @Test
+    public void run_appliesSavedTuningProfile() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.UINT8, 10,
+                100000, 20000, 0, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        File profileFile = new File(folder.getRoot(), "tuning_profile.json");
+        BenchmarkEngine engine = engine(backend, journal);
+        TuningProfile profile = new TuningProfile();
+        TuningProfile.ModelProfile modelProfile = new TuningProfile.ModelProfile();
+
+        modelProfile.latency = new TuningProfile.Config();
+        modelProfile.latency.numThreads = 2;
+        modelProfile.latency.batchSize = 4;
+        profile.put(Device.CPU, "mobilenet_v1_1.0_224_quant", modelProfile);
+        profile.save(profileFile);
+        engine.setTuningProfileFile(profileFile);
+        List<FinalResult> results = engine.run(plan("\"batchSizes\":[1],\"useTuningProfile\":true"), LISTER);
+
+        assertEquals(2, results.size());
+        assertEquals("mobilenet_v1_1.0_224", results.get(0).modelResults.get(0).modelName);
+        assertEquals(1, results.get(0).modelResults.get(0).batchSize);
+        ModelResult tuned = results.get(1).modelResults.get(0);
+        assertEquals("mobilenet_v1_1.0_224_quant", tuned.modelName);
+        assertEquals(2, tuned.numThreads);
+        assertEquals(4, tuned.batchSize);
+        assertEquals(8 / 4, tuned.iterations);
+        uploader.pause();
+    }
+
+    @Test
+    public void run_writesTraceOfStagesWithNativeTime() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.FLOAT32, 10,
+                100000, 0, 0, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        File traceFile = new File(folder.getRoot(), "trace.json");
+        BenchmarkEngine engine = engine(backend, journal);
+        Set<String> names = new HashSet<>();
+        JsonObject trace;
+
+        engine.setTraceFile(traceFile);
+        List<FinalResult> results = engine.run(plan("\"batchSizes\":[2],\"trace\":true"), LISTER);
+
+        try (Reader reader = new FileReader(traceFile)) {
+            trace = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        for (JsonElement event : trace.getAsJsonArray("traceEvents"))
+            names.add(event.getAsJsonObject().get("name").getAsString());
+        assertTrue(names.containsAll(Arrays.asList("MODEL_LOAD", "DECODE", "PREPROCESS", "WARMUP",
+                "INFERENCE", "NATIVE_INFERENCE", "POSTPROCESS", "thread_name")));
+        assertTrue(names.contains("CPU(1) mobilenet_v1/mobilenet_v1_1.0_224 batch: 2 round: 0"));
+
+        ModelResult model = results.get(0).modelResults.get(0);
+        assertEquals(4, model.nativeLatency.count);
+        assertTrue(model.nativeLatency.p50 <= model.latency.p50);
+        uploader.pause();
+    }
+
+    @Test
+    public void run_streamsFramesOfBatchOneJobs() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.FLOAT32, 10,
+                2000000, 0, 0, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        List<FinalResult> results = engine(backend, journal).run(plan("\"batchSizes\":[1,2],\"streaming\":true,"
+                + "\"streamFps\":100,\"streamDurationMs\":200,\"streamWindowMs\":100"), LISTER);
+
+        StreamingRunner.Result stream = results.get(0).modelResults.get(0).streaming;
+        assertEquals(20, stream.framesArrived);
+        assertEquals(stream.framesArrived, stream.framesProcessed + stream.framesDropped);
+        assertTrue(stream.latency.p50 >= 2000000);
+        assertNull(results.get(1).modelResults.get(0).streaming);
+        uploader.pause();
+    }
+
+    @Test
+    public void run_cascadeEscalatesSamplesBelowThreshold() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.UINT8, 10,
+                200000, 0, 0, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        List<FinalResult> results = engine(backend, journal).run(plan("\"cascade\":true,"
+                + "\"cascadeSmallModel\":\"mobilenet_v1/mobilenet_v1_0.25_128_quant.tflite\","
+                + "\"cascadeLargeModel\":\"mobilenet_v1/mobilenet_v1_1.0_224_quant.tflite\","
+                + "\"cascadeThresholds\":[0.5,1.5],\"cascadePasses\":2"), LISTER);
+
+        assertEquals(1, results.size());
+        CascadeRunner.Result cascade = results.get(0).cascade;
+        assertEquals(8, cascade.samples);
+        assertEquals(1, cascade.smallAgreement, 1e-9);
+        assertEquals(0, cascade.levels.get(0).escalationRate, 1e-9);
+        assertEquals(1, cascade.levels.get(1).escalationRate, 1e-9);
+        assertEquals(16, cascade.levels.get(1).latency.count);
+        assertTrue(cascade.levels.get(1).latency.p50 >= 2 * 200000);
+        assertEquals(2, backend.getOpened());
+        uploader.pause();
+    }
+
+    @Test
+    public void run_shuffledJobsAreGroupedAndValidatedByCanary() throws Exception {
+        FakeInferenceBackend backend = new FakeInferenceBackend(16, 16, TensorType.FLOAT32, 10,
+                200000, 0, 0, 1);
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        List<FinalResult> results = engine(backend, journal).run(plan("\"batchSizes\":[1,4],\"iterations\":2,"
+                + "\"order\":\"SHUFFLED\",\"canaryModel\":\"mobilenet_v1/mobilenet_v1_1.0_224.tflite\","
+                + "\"canaryEvery\":3,\"canaryDriftThreshold\":10"), LISTER);
+        Set<Integer> order = new HashSet<>();
+
+        assertEquals(2, results.size());
+        for (FinalResult result : results) {
+            assertEquals(4, result.modelResults.size());
+            assertEquals(BenchmarkPlan.JobOrder.SHUFFLED, result.order);
+            assertFalse(result.canaryReadings.isEmpty());
+            for (ModelResult model : result.modelResults) {
+                assertEquals(result.modelResults.get(0).batchSize, model.batchSize);
+                assertFalse(model.driftFlagged);
+                order.add(model.order);
+            }
+        }
+        assertEquals(8, order.size());
+        // first reading, one after every 3 jobs and one after the last 2 jobs
+        assertEquals(4, results.get(1).canaryReadings.size());
+        uploader.pause();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BenchmarkPlannerTest {
+
+    private static final BenchmarkPlanner.ModelLister LISTER = dir -> Arrays.asList(
+            "mobilenet_v1_1.0_224_quant.tflite", "mobilenet_v1_1.0_224.tflite",
+            "mobilenet_v1_0.5_160.tflite", "labels.txt");
+
+    @Test
+    public void plan_skipsUnsupportedCombinations() throws Exception {
+        BenchmarkPlan plan = BenchmarkPlan.fromJson("{\"modelFamilies\":[\"mobilenet_v1\"],"
+                + "\"devices\":[\"GPU\"],\"batchSizes\":[1,8],\"iterations\":2}");
+        BenchmarkPlanner planner = new BenchmarkPlanner();
+        List<BenchmarkJob> jobs = planner.plan(plan, LISTER);
+
+        // batch 1: two float models, batch 8: only 1.0_224 float model, every one twice
+        assertEquals(2 * 2 + 2, jobs.size());
+        for (BenchmarkJob job : jobs) {
+            assertFalse(job.model.contains("quant"));
+            assertEquals(-1, job.numThreads);
+        }
+        assertEquals("mobilenet_v1_0.5_160.tflite", jobs.get(0).model);
+        assertEquals(0, jobs.get(1).round);
+        assertEquals(1, jobs.get(2).round);
+        assertEquals(3, planner.getSkipped().size());
+    }
+
+    @Test
+    public void plan_expandsThreadsOfCpuDevices() throws Exception {
+        BenchmarkPlan plan = new BenchmarkPlan();
+        plan.modelFamilies = Collections.singletonList("mobilenet_v1");
+        plan.devices = Arrays.asList(Device.CPU, Device.NNAPI);
+        plan.threads = Arrays.asList(1, 2);
+        plan.batchSizes = Collections.singletonList(1);
+        plan.include = Collections.singletonList("1.0_224");
+        plan.exclude = Collections.singletonList("quant");
+        plan.iterations = 1;
+
+        List<BenchmarkJob> jobs = new BenchmarkPlanner().plan(plan, LISTER);
+
+        assertEquals(3, jobs.size());
+        assertEquals(1, jobs.get(0).numThreads);
+        assertEquals(2, jobs.get(1).numThreads);
+        assertEquals(Device.NNAPI, jobs.get(2).device);
+        assertNotEquals(jobs.get(0).getGroupKey(), jobs.get(1).getGroupKey());
+    }
+
+    @Test
+    public void plan_runsTunedModelsWithProfileConfiguration() throws Exception {
+        BenchmarkPlan plan = BenchmarkPlan.fromJson("{\"modelFamilies\":[\"mobilenet_v1\"],\"devices\":[\"CPU\"],"
+                + "\"threads\":[1,2],\"batchSizes\":[1],\"exclude\":[\"quant\"],\"iterations\":2,"
+                + "\"useTuningProfile\":true,\"tuningGoal\":\"THROUGHPUT\"}");
+        TuningProfile profile = new TuningProfile();
+        TuningProfile.ModelProfile modelProfile = new TuningProfile.ModelProfile();
+        BenchmarkPlanner planner = new BenchmarkPlanner();
+
+        modelProfile.latency = new TuningProfile.Config();
+        modelProfile.latency.numThreads = 2;
+        modelProfile.latency.batchSize = 1;
+        modelProfile.throughput = new TuningProfile.Config();
+        modelProfile.throughput.numThreads = 4;
+        modelProfile.throughput.batchSize = 8;
+        profile.put(Device.CPU, "mobilenet_v1_1.0_224", modelProfile);
+        planner.setTuningProfile(profile);
+        List<BenchmarkJob> jobs = planner.plan(plan, LISTER);
+
+        // 0.5_160 swept over two thread counts and two rounds, tuned 1.0_224 once per round
+        assertEquals(2 * 2 + 2, jobs.size());
+        for (BenchmarkJob job : jobs.subList(0, 4))
+            assertEquals("mobilenet_v1_0.5_160.tflite", job.model);
+        for (int round = 0; round < 2; round++) {
+            BenchmarkJob tuned = jobs.get(4 + round);
+            assertEquals("mobilenet_v1_1.0_224.tflite", tuned.model);
+            assertEquals(4, tuned.numThreads);
+            assertEquals(8, tuned.batchSize);
+            assertEquals(round, tuned.round);
+        }
+    }
+}
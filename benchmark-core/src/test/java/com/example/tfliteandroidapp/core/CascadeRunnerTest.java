@@ -0,0 +1,98 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CascadeRunnerTest {
+
+    private static final long MS = 1000000L;
+
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    /**
+     * Classifier with fixed classes and scores of every sample, classification advances the clock
+     */
+    private static class FixedClassifier implements CascadeRunner.Classifier {
+        final ManualClock clock;
+        final long nanos;
+        final int[] classes;
+        final float[] scores;
+        float score;
+        int calls;
+
+        FixedClassifier(ManualClock clock, long nanos, int[] classes, float[] scores) {
+            this.clock = clock;
+            this.nanos = nanos;
+            this.classes = classes;
+            this.scores = scores;
+        }
+
+        @Override
+        public int classify(int sample) {
+            clock.now += nanos;
+            score = scores[sample];
+            calls++;
+            return classes[sample];
+        }
+
+        @Override
+        public float getScore() {
+            return score;
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+
+    // small model is wrong on samples 1 and 3, both with low scores
+    private final FixedClassifier small = new FixedClassifier(clock, 2 * MS, new int[]{0, 5, 2, 7},
+            new float[]{0.9f, 0.4f, 0.8f, 0.2f});
+
+    private final FixedClassifier large = new FixedClassifier(clock, 10 * MS, new int[]{0, 1, 2, 3},
+            new float[]{1, 1, 1, 1});
+
+    @Test
+    public void run_escalatesSamplesBelowThreshold() throws Exception {
+        CascadeRunner.Result result = new CascadeRunner(clock).run(small, large, 4, 2, Arrays.asList(0.0, 0.5, 1.0));
+
+        assertEquals(0.5, result.smallAgreement, 1e-9);
+        assertEquals(2 * MS, result.smallLatency.p50, 0.05 * 2 * MS);
+        assertEquals(10 * MS, result.largeLatency.p50, 0.05 * 10 * MS);
+        assertEquals(3, result.levels.size());
+
+        CascadeRunner.Level never = result.levels.get(0);
+        assertEquals(0, never.escalationRate, 1e-9);
+        assertEquals(0.5, never.agreement, 1e-9);
+        assertEquals(0.8, never.latencySaved, 0.05);
+
+        CascadeRunner.Level half = result.levels.get(1);
+        assertEquals(8, half.latency.count);
+        assertEquals(0.5, half.escalationRate, 1e-9);
+        assertEquals(1, half.agreement, 1e-9);
+        assertEquals(7 * MS, half.latency.mean, 0.05 * 7 * MS);
+        assertEquals(12 * MS, half.latency.max, 0.05 * 12 * MS);
+
+        CascadeRunner.Level always = result.levels.get(2);
+        assertEquals(1, always.escalationRate, 1e-9);
+        assertEquals(1, always.agreement, 1e-9);
+        assertTrue(always.latencySaved < 0);
+    }
+
+    @Test
+    public void run_countsInferencesOfEveryMeasurement() throws Exception {
+        new CascadeRunner(clock).run(small, large, 4, 3, Arrays.asList(0.5, 0.85));
+
+        // reference pass, 3 passes alone and 3 passes of both thresholds
+        assertEquals(4 + 12 + 24, small.calls);
+        assertEquals(4 + 12 + 3 * 2 + 3 * 3, large.calls);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentRunnerTest {
+
+    @Test
+    public void run_recordsInferencesOfAllWorkers() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        List<ConcurrentRunner.Worker> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(new ConcurrentRunner.Worker() {
+                @Override
+                public void prepare(int batch) {
+                    assertTrue(batch >= 0 && batch < 4);
+                }
+
+                @Override
+                public void run() throws Exception {
+                    runs.incrementAndGet();
+                    Thread.sleep(1);
+                }
+            });
+        }
+
+        ConcurrentRunner.Level level = new ConcurrentRunner(Clock.SYSTEM).run(workers, 4, 2, 50000000L);
+
+        assertEquals(3, level.workers);
+        assertEquals(runs.get(), level.inferences);
+        assertEquals(level.inferences, level.latency.count);
+        assertTrue(level.throughput > 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void run_rethrowsWorkerFailure() throws Exception {
+        ConcurrentRunner.Worker failing = new ConcurrentRunner.Worker() {
+            @Override
+            public void prepare(int batch) {
+            }
+
+            @Override
+            public void run() {
+                throw new IllegalStateException("inference failed");
+            }
+        };
+        new ConcurrentRunner(Clock.SYSTEM).run(Arrays.asList(failing, failing), 1, 1, 1000000000L);
+    }
+
+    @Test
+    public void run_waitsForRunningWorkersBeforeRethrowing() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        List<ConcurrentRunner.Worker> workers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            workers.add(new ConcurrentRunner.Worker() {
+                @Override
+                public void prepare(int batch) {
+                }
+
+                @Override
+                public void run() throws Exception {
+                    running.incrementAndGet();
+                    try {
+                        Thread.sleep(50);
+                    } finally {
+                        running.decrementAndGet();
+                        finished.incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.add(new ConcurrentRunner.Worker() {
+            @Override
+            public void prepare(int batch) {
+            }
+
+            @Override
+            public void run() throws Exception {
+                Thread.sleep(10);
+                throw new IllegalStateException("inference failed");
+            }
+        });
+
+        try {
+            new ConcurrentRunner(Clock.SYSTEM).run(workers, 1, 1, 1000000000L);
+            fail();
+        } catch (IllegalStateException e) {
+            // slow workers were inside inference when the failure happened and finished it before the rethrow
+            assertEquals(0, running.get());
+            assertEquals(3, finished.get());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void run_rethrowsFailureOfPrepare() throws Exception {
+        ConcurrentRunner.Worker failing = new ConcurrentRunner.Worker() {
+            @Override
+            public void prepare(int batch) {
+                throw new IllegalArgumentException("batch could not be copied");
+            }
+
+            @Override
+            public void run() {
+            }
+        };
+        new ConcurrentRunner(Clock.SYSTEM).run(Arrays.asList(failing, failing), 1, 1, 1000000000L);
+    }
+
+    @Test
+    public void findKnee_returnsLastScalingLevel() {
+        assertEquals(3, ConcurrentRunner.findKnee(levels(100, 190, 270, 275, 280), 0.1));
+        assertEquals(3, ConcurrentRunner.findKnee(levels(100, 200, 300), 0.1));
+        assertEquals(1, ConcurrentRunner.findKnee(levels(100, 90), 0.1));
+    }
+
+    private static List<ConcurrentRunner.Level> levels(double... throughputs) {
+        List<ConcurrentRunner.Level> levels = new ArrayList<>();
+        for (int i = 0; i < throughputs.length; i++) {
+            ConcurrentRunner.Level level = new ConcurrentRunner.Level();
+            level.workers = i + 1;
+            level.throughput = throughputs[i];
+            levels.add(level);
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class DatasetPackTest {
+
+    private static final DatasetCache.Key FLOAT_KEY = new DatasetCache.Key(24, 20, TensorType.FLOAT32, 127.5f, 127.5f);
+    private static final DatasetCache.Key UINT8_KEY = new DatasetCache.Key(16, 16, TensorType.UINT8, 0.0f, 1.0f);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Synthetic images which count decoded images
+     */
+    private static class CountingSource extends SyntheticImageSource {
+        int decoded;
+
+        CountingSource() {
+            super(6, 40, 30, 3);
+        }
+
+        @Override
+        public Image decode(String name) {
+            decoded++;
+            return super.decode(name);
+        }
+    }
+
+    @Test
+    public void writePack_mappedPackServesSameTensorsWithoutDecoding() throws Exception {
+        File file = new File(folder.getRoot(), "dataset.pack");
+        DatasetCache built = new DatasetCache(new SyntheticImageSource(6, 40, 30, 3), 5, 7, Long.MAX_VALUE);
+        DatasetCache.Samples expected = built.getTensors(FLOAT_KEY);
+        built.getTensors(UINT8_KEY);
+        assertTrue(built.writePack(file));
+
+        CountingSource source = new CountingSource();
+        DatasetCache cache = new DatasetCache(source, 5, 7, Long.MAX_VALUE);
+        cache.setPack(DatasetPack.map(file));
+        DatasetCache.Samples actual = cache.getTensors(FLOAT_KEY);
+
+        assertEquals(0, source.decoded);
+        assertEquals(expected.count, actual.count);
+        assertEquals(expected.sampleSize, actual.sampleSize);
+        assertEquals(expected.data.duplicate().clear(), actual.data.duplicate().clear());
+        assertEquals(5, cache.getTensors(UINT8_KEY).count);
+        assertFalse(cache.writePack(file));
+    }
+
+    @Test
+    public void setPack_ignoresPackOfDifferentSeed() throws Exception {
+        File file = new File(folder.getRoot(), "dataset.pack");
+        DatasetCache built = new DatasetCache(new SyntheticImageSource(6, 40, 30, 3), 5, 7, Long.MAX_VALUE);
+        built.getTensors(FLOAT_KEY);
+        built.writePack(file);
+
+        CountingSource source = new CountingSource();
+        DatasetCache cache = new DatasetCache(source, 5, 8, Long.MAX_VALUE);
+        cache.setPack(DatasetPack.map(file));
+        cache.getTensors(FLOAT_KEY);
+        assertEquals(5, source.decoded);
+    }
+
+    @Test
+    public void writePack_keepsEntriesOfPreviousPack() throws Exception {
+        File file = new File(folder.getRoot(), "dataset.pack");
+        DatasetCache first = new DatasetCache(new SyntheticImageSource(6, 40, 30, 3), 5, 7, Long.MAX_VALUE);
+        first.getTensors(FLOAT_KEY);
+        first.writePack(file);
+
+        DatasetCache second = new DatasetCache(new SyntheticImageSource(6, 40, 30, 3), 5, 7, Long.MAX_VALUE);
+        second.setPack(DatasetPack.map(file));
+        second.getTensors(UINT8_KEY);
+        assertTrue(second.writePack(file));
+
+        DatasetPack pack = DatasetPack.map(file);
+        assertEquals(2, pack.getKeys().size());
+        assertNotNull(pack.getSamples(FLOAT_KEY));
+        assertNotNull(pack.getSamples(UINT8_KEY));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsOtherFiles() throws Exception {
+        File file = folder.newFile("labels.txt");
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.write(new byte[64]);
+        }
+        DatasetPack.map(file);
+    }
+
+    @Test
+    public void batches_areViewsOfConsecutiveSamples() {
+        DatasetCache cache = new DatasetCache(new SyntheticImageSource(6, 40, 30, 3), 5, 7, Long.MAX_VALUE);
+        DatasetCache.Samples samples = cache.getTensors(UINT8_KEY);
+        ByteBuffer[] batches = samples.batches(2);
+        ByteBuffer copy = ByteBuffer.allocateDirect(samples.sampleSize * 2);
+
+        assertEquals(2, batches.length);
+        samples.copyBatch(2, 2, copy);
+        assertEquals(copy, batches[1]);
+        assertTrue(batches[1].isDirect());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks fused preprocessing against hand computed tensors of small images, which pin down the center
+ * crop and the nearest neighbor sampling of Bitmap scaling, and against step by step crop, resize and
+ * normalization of larger images. Parity with the ImageProcessor chain itself is checked on a device by
+ * ImagePreprocessorParityTest.
+ */
+public class ImagePreprocessorTest {
+
+    private static int[] randomImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++)
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        return pixels;
+    }
+
+    /**
+     * ResizeWithCropOrPadOp(cropSize, cropSize) followed by nearest neighbour ResizeOp
+     */
+    private static int[] cropAndResize(int[] pixels, int width, int height, int targetHeight, int targetWidth) {
+        int cropSize = Math.min(width, height);
+        int left = (width - cropSize) / 2, top = (height - cropSize) / 2;
+        int[] cropped = new int[cropSize * cropSize];
+        int[] resized = new int[targetWidth * targetHeight];
+
+        for (int y = 0; y < cropSize; y++)
+            System.arraycopy(pixels, (top + y) * width + left, cropped, y * cropSize, cropSize);
+
+        for (int y = 0; y < targetHeight; y++) {
+            int sourceY = Math.min(cropSize - 1, (int) ((y + 0.5) * cropSize / targetHeight));
+            for (int x = 0; x < targetWidth; x++) {
+                int sourceX = Math.min(cropSize - 1, (int) ((x + 0.5) * cropSize / targetWidth));
+                resized[y * targetWidth + x] = cropped[sourceY * cropSize + sourceX];
+            }
+        }
+        return resized;
+    }
+
+    private static ByteBuffer process(ImagePreprocessor preprocessor, int[] pixels) {
+        ByteBuffer output = ByteBuffer.allocateDirect(preprocessor.getOutputSize()).order(ByteOrder.nativeOrder());
+        preprocessor.process(pixels, output);
+        assertEquals(output.capacity(), output.position());
+        output.rewind();
+        return output;
+    }
+
+    /**
+     * 4x3 image: the 3x3 center crop starts at column 0 and 2x2 nearest neighbor sampling of the crop
+     * takes source columns and rows 0 and 2, the center of the crop, column 3 and row 1 are dropped.
+     */
+    private static final int[] WIDE_IMAGE = {
+            0xFF0033FF, 0xFF111111, 0xFF66CC99, 0xFFFFFFFF,
+            0xFF222222, 0xFF222222, 0xFF222222, 0xFF222222,
+            0xFF9933CC, 0xFF333333, 0xFFCCFF00, 0xFF000000
+    };
+
+    /**
+     * 3x5 image: the 3x3 center crop starts at row 1, so rows 1 and 3 are sampled.
+     */
+    private static final int[] TALL_IMAGE = {
+            0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+            0xFF336699, 0xFF444444, 0xFFCC9933,
+            0xFF555555, 0xFF555555, 0xFF555555,
+            0xFF00FF66, 0xFF666666, 0xFFFF0099,
+            0xFF000000, 0xFF000000, 0xFF000000
+    };
+
+    @Test
+    public void uint8Output_matchesHandComputedPixels() {
+        ByteBuffer wide = process(new ImagePreprocessor(4, 3, 2, 2, ImagePreprocessor.OutputType.UINT8,
+                0.0f, 1.0f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR), WIDE_IMAGE);
+        ByteBuffer tall = process(new ImagePreprocessor(3, 5, 2, 2, ImagePreprocessor.OutputType.UINT8,
+                0.0f, 1.0f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR), TALL_IMAGE);
+        int[] expectedWide = {0, 51, 255, 102, 204, 153, 153, 51, 204, 204, 255, 0};
+        int[] expectedTall = {51, 102, 153, 204, 153, 51, 0, 255, 102, 255, 0, 153};
+
+        for (int i = 0; i < expectedWide.length; i++) {
+            assertEquals("wide value " + i, expectedWide[i], wide.get() & 0xFF);
+            assertEquals("tall value " + i, expectedTall[i], tall.get() & 0xFF);
+        }
+    }
+
+    @Test
+    public void floatOutput_matchesHandComputedPixels() {
+        ByteBuffer output = process(new ImagePreprocessor(4, 3, 2, 2, ImagePreprocessor.OutputType.FLOAT32,
+                127.5f, 127.5f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR), WIDE_IMAGE);
+        float[] expected = {-1.0f, -0.6f, 1.0f, -0.2f, 0.6f, 0.2f, 0.2f, -0.6f, 0.6f, 0.6f, 1.0f, -1.0f};
+
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("value " + i, expected[i], output.getFloat(), 1e-6f);
+    }
+
+    @Test
+    public void floatOutput_matchesStepByStepReference() {
+        int[][] sizes = {{640, 480}, {375, 500}, {224, 224}, {101, 77}};
+        for (int[] size : sizes) {
+            int[] pixels = randomImage(size[0], size[1], size[0]);
+            ImagePreprocessor preprocessor = new ImagePreprocessor(size[0], size[1], 224, 224,
+                    ImagePreprocessor.OutputType.FLOAT32, 127.5f, 127.5f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+            ByteBuffer output = process(preprocessor, pixels);
+
+            for (int pixel : cropAndResize(pixels, size[0], size[1], 224, 224)) {
+                assertEquals((((pixel >> 16) & 0xFF) - 127.5f) / 127.5f, output.getFloat(), 0.0f);
+                assertEquals((((pixel >> 8) & 0xFF) - 127.5f) / 127.5f, output.getFloat(), 0.0f);
+                assertEquals(((pixel & 0xFF) - 127.5f) / 127.5f, output.getFloat(), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void uint8Output_matchesStepByStepReference() {
+        int[] pixels = randomImage(500, 333, 7);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(500, 333, 128, 128,
+                ImagePreprocessor.OutputType.UINT8, 0.0f, 1.0f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+        ByteBuffer output = process(preprocessor, pixels);
+
+        for (int pixel : cropAndResize(pixels, 500, 333, 128, 128)) {
+            assertEquals((pixel >> 16) & 0xFF, output.get() & 0xFF);
+            assertEquals((pixel >> 8) & 0xFF, output.get() & 0xFF);
+            assertEquals(pixel & 0xFF, output.get() & 0xFF);
+        }
+    }
+
+    @Test
+    public void uint8Output_clampsNormalizedValues() {
+        int[] pixels = randomImage(200, 300, 3);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(200, 300, 96, 96,
+                ImagePreprocessor.OutputType.UINT8, 64.0f, 0.5f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+        ByteBuffer output = process(preprocessor, pixels);
+
+        for (int pixel : cropAndResize(pixels, 200, 300, 96, 96)) {
+            for (int shift = 16; shift >= 0; shift -= 8) {
+                int expected = (int) Math.max(0, Math.min(255, (((pixel >> shift) & 0xFF) - 64.0f) / 0.5f));
+                assertEquals(expected, output.get() & 0xFF);
+            }
+        }
+    }
+
+    @Test
+    public void bilinear_keepsUniformImage() {
+        int[] pixels = new int[300 * 200];
+        Arrays.fill(pixels, 0xFF102030);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(300, 200, 160, 160,
+                ImagePreprocessor.OutputType.UINT8, 0.0f, 1.0f, ImagePreprocessor.Sampling.BILINEAR);
+        ByteBuffer output = process(preprocessor, pixels);
+
+        while (output.hasRemaining()) {
+            assertEquals(0x10, output.get());
+            assertEquals(0x20, output.get());
+            assertEquals(0x30, output.get());
+        }
+    }
+
+    @Test
+    public void matches_comparesWholeSignature() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(640, 480, 224, 224,
+                ImagePreprocessor.OutputType.FLOAT32, 127.5f, 127.5f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+
+        assertTrue(preprocessor.matches(640, 480, 224, 224,
+                ImagePreprocessor.OutputType.FLOAT32, 127.5f, 127.5f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR));
+        assertFalse(preprocessor.matches(640, 480, 224, 224,
+                ImagePreprocessor.OutputType.UINT8, 0.0f, 1.0f, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR));
+    }
+}
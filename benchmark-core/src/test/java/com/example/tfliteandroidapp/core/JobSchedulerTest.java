@@ -0,0 +1,99 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JobSchedulerTest {
+
+    private static List<BenchmarkJob> jobs(int models, int rounds) {
+        List<BenchmarkJob> jobs = new ArrayList<>();
+        for (int batchSize : Arrays.asList(1, 2))
+            for (int round = 0; round < rounds; round++)
+                for (int model = 0; model < models; model++)
+                    jobs.add(new BenchmarkJob(Device.CPU, 1, "family", "model" + model + ".tflite", batchSize, round));
+        return jobs;
+    }
+
+    private static BenchmarkPlan canaryPlan() {
+        return BenchmarkPlan.fromJson("{\"canaryModel\":\"family/model0.tflite\",\"canaryEvery\":2,"
+                + "\"canaryDriftThreshold\":0.1,\"maxRequeues\":1}");
+    }
+
+    @Test
+    public void order_shufflesEveryRoundWithSeed() {
+        BenchmarkPlan plan = BenchmarkPlan.fromJson("{\"order\":\"SHUFFLED\",\"scheduleSeed\":3}");
+        List<BenchmarkJob> jobs = jobs(5, 2);
+        List<BenchmarkJob> ordered = JobScheduler.order(plan, jobs);
+
+        assertEquals(jobs.size(), ordered.size());
+        assertTrue(ordered.containsAll(jobs));
+        assertNotEquals(jobs, ordered);
+        for (int i = 0; i < ordered.size(); i++)
+            assertEquals(i < 10 ? 0 : 1, ordered.get(i).round);
+        assertEquals(ordered, JobScheduler.order(plan, jobs));
+        assertEquals(jobs, JobScheduler.order(new BenchmarkPlan(), jobs));
+    }
+
+    @Test
+    public void onCanary_commitsResultsWithinThreshold() {
+        JobScheduler scheduler = new JobScheduler(canaryPlan(), jobs(2, 1));
+        List<JobScheduler.Completed> committed = new ArrayList<>();
+
+        assertTrue(scheduler.isCanaryDue());
+        assertFalse(scheduler.onCanary(1000, committed));
+        assertTrue(scheduler.complete(scheduler.next(), new ModelResult()).isEmpty());
+        assertFalse(scheduler.isCanaryDue());
+        assertTrue(scheduler.complete(scheduler.next(), new ModelResult()).isEmpty());
+        assertTrue(scheduler.isCanaryDue());
+
+        assertFalse(scheduler.onCanary(1050, committed));
+        assertEquals(2, committed.size());
+        assertEquals(1, committed.get(1).result.order);
+        assertEquals(0.05, committed.get(1).result.canaryDrift, 1e-9);
+        assertFalse(committed.get(1).result.driftFlagged);
+        assertEquals(2, scheduler.getReadings().size());
+    }
+
+    @Test
+    public void onCanary_requeuesThenFlagsJobsMeasuredDuringDrift() {
+        JobScheduler scheduler = new JobScheduler(canaryPlan(), jobs(1, 1));
+        List<JobScheduler.Completed> committed = new ArrayList<>();
+        BenchmarkJob first, second;
+
+        scheduler.onCanary(1000, committed);
+        first = scheduler.next();
+        second = scheduler.next();
+        scheduler.complete(first, new ModelResult());
+        scheduler.complete(second, new ModelResult());
+        assertTrue(scheduler.onCanary(1300, committed));
+        assertTrue(committed.isEmpty());
+        assertTrue(scheduler.onCooldown(1200));
+        assertFalse(scheduler.onCooldown(1020));
+
+        assertSame(first, scheduler.next());
+        assertSame(second, scheduler.next());
+        scheduler.complete(first, new ModelResult());
+        scheduler.complete(second, new ModelResult());
+        assertTrue(scheduler.onCanary(1500, committed));
+        assertEquals(2, committed.size());
+        assertTrue(committed.get(0).result.driftFlagged);
+        assertEquals(1, committed.get(0).result.requeues);
+        assertEquals(2, committed.get(0).result.order);
+        assertFalse(scheduler.hasNext());
+        assertTrue(scheduler.getReadings().get(2).afterCooldown);
+    }
+
+    @Test
+    public void complete_commitsImmediatelyWithoutCanary() {
+        JobScheduler scheduler = new JobScheduler(new BenchmarkPlan(), jobs(1, 1));
+
+        assertFalse(scheduler.isCanaryDue());
+        assertEquals(1, scheduler.complete(scheduler.next(), new ModelResult()).size());
+        assertEquals(1, scheduler.complete(scheduler.next(), null).size());
+    }
+}
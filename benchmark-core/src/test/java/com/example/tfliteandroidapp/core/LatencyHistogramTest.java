@@ -0,0 +1,66 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucket_containsValue() {
+        long[] values = {0, 1, 127, 128, 129, 255, 256, 1000, 123456789L, Long.MAX_VALUE / 3};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(LatencyHistogram.lowerBound(bucket) <= value);
+            assertTrue(value < LatencyHistogram.lowerBound(bucket) + LatencyHistogram.bucketWidth(bucket));
+        }
+    }
+
+    @Test
+    public void percentiles_withinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000000 + (long) (Math.abs(random.nextGaussian()) * 5000000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(expected, histogram.getPercentile(percentile), expected * 0.016);
+        }
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(values.length, histogram.getCount());
+    }
+
+    @Test
+    public void merge_combinesStatistics() {
+        LatencyHistogram first = new LatencyHistogram(8);
+        LatencyHistogram second = new LatencyHistogram(8);
+        for (int i = 1; i <= 100; i++) {
+            first.record(i * 1000);
+            second.record(i * 1000 + 100000);
+        }
+        first.merge(second);
+
+        assertEquals(200, first.getCount());
+        assertEquals(1000, first.getMin());
+        assertEquals(200000, first.getMax());
+        assertEquals(100500, first.getMean(), 1e-6);
+        assertEquals(8, first.getReservoir().length);
+    }
+
+    @Test
+    public void reservoir_isBounded() {
+        LatencyHistogram histogram = new LatencyHistogram(16);
+        for (int i = 0; i < 100000; i++)
+            histogram.record(i);
+        assertEquals(16, histogram.getReservoir().length);
+    }
+}
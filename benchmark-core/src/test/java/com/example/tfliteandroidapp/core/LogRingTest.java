@@ -0,0 +1,97 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LogRingTest {
+
+    @Test
+    public void render_showsNewestMessagesFirst() {
+        LogRing ring = new LogRing(4);
+
+        for (int i = 0; i < 10; i++)
+            ring.add("message " + i);
+
+        assertEquals("message 9\nmessage 8\nmessage 7\n", ring.render(3));
+        assertEquals(10, ring.getCount());
+    }
+
+    @Test
+    public void render_returnsNullWithoutNewMessages() {
+        LogRing ring = new LogRing(4);
+
+        assertEquals("", ring.render(10));
+        assertNull(ring.render(10));
+        ring.add("a");
+        assertEquals("a\n", ring.render(10));
+        assertNull(ring.render(10));
+    }
+
+    @Test
+    public void render_showsMessageInFlightOnceItIsPublished() {
+        LogRing ring = new LogRing(4);
+
+        ring.add("a");
+        long sequence = ring.claim();
+        ring.add("c");
+        assertEquals("c\na\n", ring.render(10));
+
+        ring.publish(sequence, "b");
+        assertEquals("c\nb\na\n", ring.render(10));
+        assertNull(ring.render(10));
+    }
+
+    @Test
+    public void add_fromSeveralThreadsKeepsWholeMessages() throws Exception {
+        final LogRing ring = new LogRing(16);
+        List<Thread> writers = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            final String prefix = "writer " + t + " ";
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 20000; i++)
+                    ring.add(prefix + i);
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        while (writers.get(0).isAlive()) {
+            String text = ring.render(16);
+            if (text != null)
+                assertWholeMessages(text);
+        }
+        for (Thread writer : writers)
+            writer.join();
+        ring.add("writer done -1");
+
+        assertEquals(80001, ring.getCount());
+        String text = ring.render(100);
+        assertWholeMessages(text);
+        assertEquals(16, text.split("\n").length);
+        assertTrue(text.startsWith("writer done"));
+    }
+
+    /**
+     * Checks that every line is a message as written and that messages of every writer are newest first,
+     * which fails when a slot shows message of one writer under sequence number of another
+     */
+    private static void assertWholeMessages(String text) {
+        Map<String, Integer> last = new HashMap<>();
+        for (String line : text.split("\n")) {
+            if (line.isEmpty())
+                continue;
+            assertTrue(line, line.startsWith("writer "));
+            int index = line.lastIndexOf(' ');
+            String writer = line.substring(0, index);
+            int i = Integer.parseInt(line.substring(index + 1));
+            Integer previous = last.put(writer, i);
+            assertTrue(line, previous == null || i < previous);
+        }
+    }
+}
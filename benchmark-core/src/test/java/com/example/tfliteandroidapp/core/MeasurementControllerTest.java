@@ -0,0 +1,101 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MeasurementControllerTest {
+
+    private long now;
+
+    private final Clock clock = () -> now;
+
+    @Test
+    public void autoWarmup_stopsWhenLatencyIsStable() {
+        MeasurementController controller = new MeasurementController(-1, 100, 0.02, 20, 1000, 0, clock);
+        long[] warmup = {50000000, 20000000, 12000000, 10500000, 10100000};
+        int i = 0;
+
+        assertTrue(controller.isWarmingUp());
+        while (controller.isWarmingUp())
+            controller.recordWarmup(i < warmup.length ? warmup[i++] : 10000000);
+
+        // windows slide by one inference: medians 10.5ms and 10ms of inferences 2-6 and 7-11 differ by less than 5%
+        assertEquals(11, controller.getWarmupIterations());
+        assertEquals(50000000, controller.getWarmupSummary().max, 0);
+    }
+
+    @Test
+    public void measurement_convergesOnStableLatency() {
+        MeasurementController controller = new MeasurementController(0, 0, 0.02, 20, 1000, 0, clock);
+        Random random = new Random(1);
+
+        assertFalse(controller.isWarmingUp());
+        controller.start();
+        while (controller.record(10000000 + random.nextInt(100000)))
+            ;
+
+        assertEquals(MeasurementController.StopReason.CONVERGED, controller.getStopReason());
+        assertEquals(20, controller.getIterations());
+        assertTrue(controller.getMedianCiWidth() <= 0.02);
+    }
+
+    @Test
+    public void measurement_stopsOnTimeBudget() {
+        MeasurementController controller = new MeasurementController(0, 0, 0.001, 10, 1000, 1000000000L, clock);
+        Random random = new Random(1);
+
+        controller.start();
+        while (controller.record(10000000 + random.nextInt(10000000)))
+            now += 100000000;
+
+        assertEquals(MeasurementController.StopReason.TIME_BUDGET, controller.getStopReason());
+        assertEquals(11, controller.getIterations());
+    }
+
+    @Test
+    public void medianCiWidth_coversInferencesAfterLastCheck() {
+        MeasurementController controller = new MeasurementController(0, 0, 0.001, 10, 12, 0, clock);
+        long[] latencies = {1000, 1001, 1002, 1003, 1004, 1005, 1006, 1007, 1008, 1009, 5000, 6000};
+        int i = 0;
+
+        controller.start();
+        while (controller.record(latencies[i++]))
+            ;
+
+        // convergence was last checked after 10 inferences, the width after the stop covers all 12
+        assertEquals(MeasurementController.StopReason.MAX_ITERATIONS, controller.getStopReason());
+        assertEquals(MeasurementController.medianCiWidth(latencies, 12), controller.getMedianCiWidth(), 0);
+        assertTrue(controller.getMedianCiWidth() > 1);
+    }
+
+    @Test
+    public void fixedMode_measuresExactCount() {
+        MeasurementController controller = new MeasurementController(3, 0, 0, 8, 8, 0, clock);
+        int warmup = 0;
+
+        while (controller.isWarmingUp() && controller.recordWarmup(1000))
+            warmup++;
+        controller.start();
+        while (controller.record(1000))
+            ;
+
+        assertEquals(2, warmup);
+        assertEquals(3, controller.getWarmupIterations());
+        assertEquals(8, controller.getIterations());
+        assertEquals(MeasurementController.StopReason.FIXED, controller.getStopReason());
+    }
+
+    @Test
+    public void medianCi_usesOrderStatistics() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = 1000 + i;
+
+        // ranks 40 and 61 (1-based) of 100 values
+        assertEquals(21.0 / 1049, MeasurementController.medianCiWidth(sorted, 100), 1e-9);
+        assertEquals(Double.POSITIVE_INFINITY, MeasurementController.medianCiWidth(sorted, 1), 0);
+    }
+}
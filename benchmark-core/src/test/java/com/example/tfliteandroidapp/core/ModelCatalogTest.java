@@ -0,0 +1,262 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ModelCatalogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes flatbuffer front to back, every reference points to an object written after it
+     */
+    private static class FlatBufferWriter {
+        final ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+
+        FlatBufferWriter() {
+            buffer.position(4);
+            buffer.put("TFL3".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        void align(int alignment, int extra) {
+            while ((buffer.position() + extra) % alignment != 0)
+                buffer.put((byte) 0);
+        }
+
+        /**
+         * Writes vtable and table with a 4 byte slot for every field, absent fields get no slot
+         */
+        int table(int fields, int... absent) {
+            align(4, 0);
+            int vtable = buffer.position();
+            buffer.putShort((short) (4 + 2 * fields)).putShort((short) (4 + 4 * fields));
+            for (int i = 0; i < fields; i++)
+                buffer.putShort((short) (Arrays.binarySearch(absent, i) >= 0 ? 0 : 4 + 4 * i));
+            align(4, 0);
+            int table = buffer.position();
+            buffer.putInt(table - vtable);
+            for (int i = 0; i < fields; i++)
+                buffer.putInt(0);
+            return table;
+        }
+
+        int slot(int table, int field) {
+            return table + 4 + 4 * field;
+        }
+
+        void setInt(int table, int field, int value) {
+            buffer.putInt(slot(table, field), value);
+        }
+
+        void setRef(int position, int target) {
+            buffer.putInt(position, target - position);
+        }
+
+        void setRef(int table, int field, int target) {
+            setRef(slot(table, field), target);
+        }
+
+        int ints(int... values) {
+            align(4, 0);
+            int vector = buffer.position();
+            buffer.putInt(values.length);
+            for (int value : values)
+                buffer.putInt(value);
+            return vector;
+        }
+
+        int floats(float... values) {
+            align(4, 0);
+            int vector = buffer.position();
+            buffer.putInt(values.length);
+            for (float value : values)
+                buffer.putFloat(value);
+            return vector;
+        }
+
+        int longs(long... values) {
+            align(8, 4);
+            int vector = buffer.position();
+            buffer.putInt(values.length);
+            for (long value : values)
+                buffer.putLong(value);
+            return vector;
+        }
+
+        int refs(int length) {
+            return ints(new int[length]);
+        }
+
+        int string(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            align(4, 0);
+            int string = buffer.position();
+            buffer.putInt(bytes.length).put(bytes).put((byte) 0);
+            return string;
+        }
+
+        int tensor(String name, int type, float scale, long zeroPoint, int... shape) {
+            int tensor = table(5);
+            setInt(tensor, 1, type);
+            setRef(tensor, 0, ints(shape));
+            setRef(tensor, 3, string(name));
+            int quantization = table(4);
+            setRef(tensor, 4, quantization);
+            setRef(quantization, 0, floats());
+            setRef(quantization, 1, floats());
+            setRef(quantization, 2, floats(scale));
+            setRef(quantization, 3, longs(zeroPoint));
+            return tensor;
+        }
+
+        ByteBuffer finish() {
+            ByteBuffer result = ByteBuffer.allocateDirect(buffer.position());
+            buffer.flip();
+            result.put(buffer).clear();
+            return result;
+        }
+    }
+
+    /**
+     * Model with uint8 input and output, one CONV_2D and optionally one custom operator
+     */
+    private static ByteBuffer model(String description, String customOp) {
+        FlatBufferWriter writer = new FlatBufferWriter();
+        int model = writer.table(4);
+        writer.buffer.putInt(0, model);
+        writer.setInt(model, 0, 3);
+
+        int opcodes = writer.refs(customOp != null ? 2 : 1);
+        writer.setRef(model, 1, opcodes);
+        int conv = writer.table(4, 1);
+        writer.setRef(opcodes + 4, conv);
+        writer.setInt(conv, 0, 3);
+        if (customOp != null) {
+            int custom = writer.table(4);
+            writer.setRef(opcodes + 8, custom);
+            writer.setInt(custom, 0, 32);
+            writer.setRef(custom, 1, writer.string(customOp));
+        }
+
+        int subgraphs = writer.refs(1);
+        writer.setRef(model, 2, subgraphs);
+        int subgraph = writer.table(5);
+        writer.setRef(subgraphs + 4, subgraph);
+        int tensors = writer.refs(2);
+        writer.setRef(subgraph, 0, tensors);
+        writer.setRef(tensors + 4, writer.tensor("input", 3, 0.0078125f, 128, 1, 224, 224, 3));
+        writer.setRef(tensors + 8, writer.tensor("output", 3, 0.00390625f, 0, 1, 1001));
+        writer.setRef(subgraph, 1, writer.ints(0));
+        writer.setRef(subgraph, 2, writer.ints(1));
+        int operators = writer.refs(customOp != null ? 2 : 1);
+        writer.setRef(subgraph, 3, operators);
+        for (int i = 0; i < (customOp != null ? 2 : 1); i++) {
+            int operator = writer.table(1);
+            writer.setRef(operators + 4 + 4 * i, operator);
+            writer.setInt(operator, 0, i);
+        }
+        writer.setRef(subgraph, 4, writer.string("main"));
+        writer.setRef(model, 3, writer.string(description));
+        return writer.finish();
+    }
+
+    /**
+     * Models kept in memory which count opened files
+     */
+    private static class Models implements ModelCatalog.ModelSource {
+        final Map<String, ByteBuffer> files = new HashMap<>();
+        int opened;
+
+        @Override
+        public ByteBuffer open(String path) throws IOException {
+            opened++;
+            if (!files.containsKey(path))
+                throw new IOException("No such model " + path);
+            return files.get(path);
+        }
+    }
+
+    @Test
+    public void get_readsTensorsAndOperatorsFromFlatbuffer() {
+        Models models = new Models();
+        models.files.put("m/a.tflite", model("test model", "edgetpu-custom-op"));
+        ModelInfo info = new ModelCatalog(null, models).get("m/a.tflite");
+
+        assertEquals(3, info.schemaVersion);
+        assertEquals("test model", info.description);
+        assertArrayEquals(new int[]{1, 224, 224, 3}, info.inputs.get(0).shape);
+        assertEquals("UINT8", info.inputs.get(0).type);
+        assertEquals("input", info.inputs.get(0).name);
+        assertEquals(0.0078125f, info.inputs.get(0).scale, 0.0f);
+        assertEquals(128, info.inputs.get(0).zeroPoint);
+        assertArrayEquals(new int[]{1, 1001}, info.outputs.get(0).shape);
+        assertEquals(Collections.singletonList("CONV_2D"), info.ops);
+        assertEquals(Collections.singletonList("edgetpu-custom-op"), info.customOps);
+        assertTrue(info.isQuantized());
+    }
+
+    @Test
+    public void get_reusesIndexUntilContentChanges() throws Exception {
+        File indexFile = new File(folder.getRoot(), "model_catalog.json");
+        Models models = new Models();
+        models.files.put("m/a.tflite", model("first", null));
+
+        ModelCatalog catalog = new ModelCatalog(indexFile, models);
+        assertEquals("first", catalog.get("m/a.tflite").description);
+        catalog.get("m/a.tflite");
+        assertEquals(1, models.opened);
+        assertTrue(catalog.save());
+        assertFalse(catalog.save());
+
+        catalog = new ModelCatalog(indexFile, models);
+        assertEquals("first", catalog.get("m/a.tflite").description);
+        assertEquals("Model catalog hits: 1 misses: 0", catalog.toString());
+
+        models.files.put("m/a.tflite", model("other", null));
+        catalog = new ModelCatalog(indexFile, models);
+        assertEquals("other", catalog.get("m/a.tflite").description);
+        assertEquals("Model catalog hits: 0 misses: 1", catalog.toString());
+    }
+
+    @Test
+    public void get_returnsNullForOtherFiles() {
+        Models models = new Models();
+        models.files.put("m/labels.tflite", ByteBuffer.wrap("not a model".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(new ModelCatalog(null, models).get("m/labels.tflite"));
+        assertNull(new ModelCatalog(null, models).get("m/missing.tflite"));
+    }
+
+    @Test
+    public void plan_skipsByMetadataInsteadOfName() throws Exception {
+        Models models = new Models();
+        models.files.put("models/m/plain.tflite", model("", null));
+        models.files.put("models/m/accelerated.tflite", model("", "edgetpu-custom-op"));
+        BenchmarkPlan plan = BenchmarkPlan.fromJson("{\"modelsBaseDir\":\"models/\",\"modelFamilies\":[\"m\"],"
+                + "\"devices\":[\"CPU\",\"GPU\"],\"batchSizes\":[1],\"batchedModels\":[]}");
+        BenchmarkPlanner planner = new BenchmarkPlanner();
+
+        planner.setCatalog(new ModelCatalog(null, models));
+        List<BenchmarkJob> jobs = planner.plan(plan, dir -> Arrays.asList("plain.tflite", "accelerated.tflite"));
+
+        assertEquals(1, jobs.size());
+        assertEquals(Device.CPU, jobs.get(0).device);
+        assertEquals("plain.tflite", jobs.get(0).model);
+        assertEquals(3, planner.getSkipped().size());
+        assertEquals(2, models.opened);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the pipeline with a fake session which copies the batch index from input to output.
+ */
+public class PipelinedRunnerTest {
+
+    private static final int SLOTS = 2;
+
+    private final PipelinedRunner runner = new PipelinedRunner();
+
+    private final ByteBuffer[] inputs = new ByteBuffer[SLOTS];
+
+    private final ByteBuffer[] outputs = new ByteBuffer[SLOTS];
+
+    /**
+     * Written by the post-processing worker and read by the test thread
+     */
+    private final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private final List<Long> latencies = new ArrayList<>();
+
+    public PipelinedRunnerTest() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            inputs[slot] = ByteBuffer.allocate(4);
+            outputs[slot] = ByteBuffer.allocate(4);
+        }
+    }
+
+    @After
+    public void shutdown() {
+        runner.shutdown();
+    }
+
+    private static void fill(int batch, ByteBuffer input) {
+        input.putInt(batch);
+    }
+
+    private static void session(ByteBuffer input, ByteBuffer output) {
+        output.putInt(input.getInt());
+    }
+
+    private void postProcess(int slot, ByteBuffer output) {
+        processed.add(output.getInt());
+    }
+
+    private long run(int numBatches, PipelinedRunner.BatchProducer producer, PipelinedRunner.Inference inference,
+                     PipelinedRunner.PostProcessor postProcessor) throws Exception {
+        return runner.run(numBatches, inputs, outputs, producer, inference, postProcessor, latencies::add);
+    }
+
+    @Test(timeout = 10000)
+    public void run_handsEveryBatchThroughAllStagesInOrder() throws Exception {
+        final AtomicInteger postProcessed = new AtomicInteger();
+        final int[] maxAhead = new int[1];
+
+        long wallTime = run(50,
+                (batch, input) -> {
+                    maxAhead[0] = Math.max(maxAhead[0], batch - postProcessed.get());
+                    fill(batch, input);
+                },
+                PipelinedRunnerTest::session,
+                (slot, output) -> {
+                    postProcess(slot, output);
+                    postProcessed.incrementAndGet();
+                });
+
+        assertEquals(50, processed.size());
+        for (int batch = 0; batch < 50; batch++)
+            assertEquals(batch, (int) processed.get(batch));
+        assertEquals(50, latencies.size());
+        assertTrue(wallTime > 0);
+        // a batch is filled only after the slot it takes was post-processed
+        assertTrue(maxAhead[0] < SLOTS);
+    }
+
+    @Test(timeout = 10000)
+    public void run_rethrowsProducerFailure() throws Exception {
+        try {
+            run(10,
+                    (batch, input) -> {
+                        if (batch == 3)
+                            throw new IllegalStateException("decode failed");
+                        fill(batch, input);
+                    },
+                    PipelinedRunnerTest::session, this::postProcess);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("decode failed", e.getMessage());
+        }
+        assertTrue(latencies.size() <= 3);
+    }
+
+    @Test(timeout = 10000)
+    public void run_rethrowsPostProcessorFailure() throws Exception {
+        try {
+            run(10, PipelinedRunnerTest::fill, PipelinedRunnerTest::session,
+                    (slot, output) -> {
+                        throw new IllegalStateException("top-k failed");
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("top-k failed", e.getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void run_rethrowsFailureOfLastPostProcessing() throws Exception {
+        try {
+            run(4, PipelinedRunnerTest::fill, PipelinedRunnerTest::session,
+                    (slot, output) -> {
+                        if (output.getInt() == 3)
+                            throw new IllegalStateException("top-k failed");
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(4, latencies.size());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void run_rethrowsInferenceFailureAndCanRunAgain() throws Exception {
+        try {
+            run(10, PipelinedRunnerTest::fill,
+                    (input, output) -> {
+                        if (input.getInt() == 2)
+                            throw new IllegalStateException("inference failed");
+                        output.putInt(0);
+                    },
+                    this::postProcess);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(2, latencies.size());
+        }
+
+        processed.clear();
+        latencies.clear();
+        run(5, PipelinedRunnerTest::fill, PipelinedRunnerTest::session, this::postProcess);
+        assertEquals(5, processed.size());
+        assertEquals(5, latencies.size());
+    }
+
+    @Test(timeout = 10000)
+    public void run_waitsForRunningPostProcessingBeforeRethrowing() throws Exception {
+        final AtomicInteger finished = new AtomicInteger();
+        try {
+            run(10, PipelinedRunnerTest::fill,
+                    (input, output) -> {
+                        int batch = input.getInt();
+                        if (batch == 1)
+                            throw new IllegalStateException("inference failed");
+                        output.putInt(batch);
+                    },
+                    (slot, output) -> {
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            // process() does not respond to interruption, like top-K of a real batch
+                        }
+                        finished.incrementAndGet();
+                    });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(1, latencies.size());
+        }
+        assertTrue(finished.get() <= 1);
+        int atReturn = finished.get();
+        Thread.sleep(300);
+        // post-processing of batch 0 either finished before run() returned or never started
+        assertEquals(atReturn, finished.get());
+    }
+
+    @Test(timeout = 10000, expected = InterruptedException.class)
+    public void run_throwsWhenProducerIsInterrupted() throws Exception {
+        run(10,
+                (batch, input) -> {
+                    if (batch == 1)
+                        Thread.currentThread().interrupt();
+                    fill(batch, input);
+                },
+                PipelinedRunnerTest::session, this::postProcess);
+    }
+
+    @Test(timeout = 10000)
+    public void run_throwsWhenCallerIsInterrupted() throws Exception {
+        Thread.currentThread().interrupt();
+        try {
+            run(10, PipelinedRunnerTest::fill, PipelinedRunnerTest::session, this::postProcess);
+            fail();
+        } catch (InterruptedException e) {
+            assertTrue(latencies.isEmpty());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
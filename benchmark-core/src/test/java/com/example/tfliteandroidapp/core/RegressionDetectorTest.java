@@ -0,0 +1,105 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.Gson;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RegressionDetectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static ModelResult model(String name, double medianMs, long seed) {
+        ModelResult modelResult = new ModelResult();
+        Random random = new Random(seed);
+
+        modelResult.modelName = name;
+        modelResult.delegate = Device.CPU;
+        modelResult.batchSize = 1;
+        modelResult.numThreads = 4;
+        for (int i = 0; i < 200; i++)
+            modelResult.record((long) (medianMs * 1e6 * (1 + 0.03 * random.nextGaussian())));
+        modelResult.finish();
+        return modelResult;
+    }
+
+    private static FinalResult result(ModelResult... models) {
+        FinalResult result = new FinalResult();
+        result.systemInfo = SystemInfo.ofJvm();
+        for (ModelResult model : models)
+            result.add(model);
+        result.finish();
+        return result;
+    }
+
+    @Test
+    public void compare_detectsRegressionAndImprovement() {
+        List<FinalResult> baseline = Collections.singletonList(
+                result(model("a", 10, 1), model("b", 10, 2), model("c", 10, 3), model("d", 10, 4)));
+        List<FinalResult> candidate = Collections.singletonList(
+                result(model("a", 12, 5), model("b", 8, 6), model("c", 10, 7), model("e", 10, 8)));
+
+        RegressionDetector.Report report = new RegressionDetector().compare(baseline, candidate);
+
+        assertEquals(5, report.comparisons.size());
+        assertEquals(RegressionDetector.Verdict.REGRESSION, report.comparisons.get(0).verdict);
+        assertEquals(0.2, report.comparisons.get(0).medianDelta, 0.03);
+        assertTrue(report.comparisons.get(0).ciLow < 0.2 && report.comparisons.get(0).ciHigh > 0.2);
+        assertEquals(RegressionDetector.Verdict.IMPROVEMENT, report.comparisons.get(1).verdict);
+        assertEquals(RegressionDetector.Verdict.NO_CHANGE, report.comparisons.get(2).verdict);
+        assertEquals(RegressionDetector.Verdict.MISSING_CANDIDATE, report.comparisons.get(3).verdict);
+        assertEquals(RegressionDetector.Verdict.MISSING_BASELINE, report.comparisons.get(4).verdict);
+        assertTrue(report.hasRegressions());
+    }
+
+    @Test
+    public void compare_smallChangeIsNotRegression() {
+        List<FinalResult> baseline = Collections.singletonList(result(model("a", 10, 1)));
+        List<FinalResult> candidate = Collections.singletonList(result(model("a", 10.2, 2)));
+
+        RegressionDetector.Report report = new RegressionDetector().compare(baseline, candidate);
+
+        assertEquals(RegressionDetector.Verdict.NO_CHANGE, report.comparisons.get(0).verdict);
+        assertFalse(report.hasRegressions());
+    }
+
+    @Test
+    public void mannWhitneyP_matchesNormalApproximation() {
+        double p = RegressionDetector.mannWhitneyP(new double[]{1, 2, 3, 4, 5}, new double[]{6, 7, 8, 9, 10});
+
+        assertEquals(0.0122, p, 0.0005);
+        assertEquals(1.0, RegressionDetector.mannWhitneyP(new double[]{1, 1}, new double[]{1, 1}), 0.0);
+    }
+
+    @Test
+    public void load_readsJournalAndSinkLines() throws Exception {
+        File file = new File(folder.getRoot(), "results.jsonl");
+        String json = new Gson().toJson(result(model("a", 10, 1)));
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("id-1\t" + json + "\n" + json + "\n{broken\n");
+        }
+        List<String> skipped = new ArrayList<>();
+        List<FinalResult> results = RegressionDetector.load(file, skipped);
+
+        assertEquals(2, results.size());
+        assertEquals(1, skipped.size());
+        RegressionDetector.Report report = new RegressionDetector().compare(results.subList(0, 1), results.subList(1, 2));
+        assertEquals(RegressionDetector.Verdict.NO_CHANGE, report.comparisons.get(0).verdict);
+        assertEquals(64, report.comparisons.get(0).baselineCount);
+    }
+}
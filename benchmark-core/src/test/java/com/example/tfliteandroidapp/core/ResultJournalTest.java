@@ -0,0 +1,90 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void acknowledgedRecords_areNotReadAgain() throws Exception {
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        journal.append("{\"a\":1}");
+        journal.append("{\"b\":2}");
+        journal.append("{\"c\":3}");
+
+        ResultJournal.Batch first = journal.read(2);
+        assertEquals(2, first.records.size());
+        assertEquals("{\"a\":1}", first.records.get(0).json);
+        journal.acknowledge(first);
+
+        // new instance reads cursor from disk like after restart of the application
+        ResultJournal reopened = new ResultJournal(folder.getRoot(), "results.journal");
+        ResultJournal.Batch second = reopened.read(10);
+        assertEquals(1, second.records.size());
+        assertEquals("{\"c\":3}", second.records.get(0).json);
+        reopened.acknowledge(second);
+
+        assertFalse(reopened.hasPending());
+        assertTrue(reopened.read(10).records.isEmpty());
+    }
+
+    @Test
+    public void incompleteLastLine_isSkipped() throws Exception {
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        journal.append("{\"a\":1}");
+        try (FileOutputStream output = new FileOutputStream(new File(folder.getRoot(), "results.journal"), true)) {
+            output.write("broken\t{\"b\":".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(1, journal.read(10).records.size());
+    }
+
+    @Test
+    public void uploader_retriesFailedBatch() throws Exception {
+        ResultJournal journal = new ResultJournal(folder.getRoot(), "results.journal");
+        InMemoryResultSink sink = new InMemoryResultSink();
+        ResultUploader uploader = new ResultUploader(journal, sink, 2, 1, 10);
+        final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+        uploader.setListener(messages::add);
+        journal.append("{\"a\":1}");
+        journal.append("{\"b\":2}");
+        journal.append("{\"c\":3}");
+        sink.failNext(2);
+
+        uploader.requestUpload();
+        for (int i = 0; i < 500 && journal.hasPending(); i++)
+            Thread.sleep(10);
+        uploader.shutdown();
+
+        assertFalse(journal.hasPending());
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":2}", "{\"c\":3}"), sink.getRecords());
+        assertEquals(2, uploader.getFailedAttempts());
+        assertEquals("java.lang.Exception: Simulated failure of result sink", uploader.getLastFailure());
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0).startsWith("Upload failed"));
+    }
+
+    @Test
+    public void localFileSink_appendsLines() throws Exception {
+        File file = new File(folder.getRoot(), "results.jsonl");
+        LocalFileResultSink sink = new LocalFileResultSink(file);
+        sink.write(Arrays.asList(new ResultRecord("1", "{\"a\":1}"), new ResultRecord("2", "{\"b\":2}")));
+
+        assertEquals("{\"a\":1}\n{\"b\":2}\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
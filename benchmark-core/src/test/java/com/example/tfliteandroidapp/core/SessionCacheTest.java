@@ -0,0 +1,143 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class SessionCacheTest {
+
+    private final FakeInferenceBackend backend = new FakeInferenceBackend(2, 2, TensorType.UINT8, 4, 0, 0, 0, 1);
+
+    private static boolean isClosed(SessionCache.Entry entry) throws Exception {
+        try {
+            entry.session.run(ByteBuffer.allocate(12 * entry.batchSize), ByteBuffer.allocate(4 * entry.batchSize));
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    @Test
+    public void get_reusesCachedSession() throws Exception {
+        SessionCache cache = new SessionCache(backend, MemoryProbe.JVM);
+
+        SessionCache.Entry first = cache.get("a.tflite", Device.CPU, 4, 1);
+        assertNotNull(cache.getLastColdStart());
+        SessionCache.Entry second = cache.get("a.tflite", Device.CPU, 4, 1);
+
+        assertSame(first, second);
+        assertNull(cache.getLastColdStart());
+        assertEquals(1, backend.getOpened());
+        assertEquals(1, cache.getStats().hits);
+        assertEquals(1, cache.getStats().misses);
+    }
+
+    @Test
+    public void get_keysSessionsByDeviceAndThreads() throws Exception {
+        SessionCache cache = new SessionCache(backend, MemoryProbe.JVM);
+
+        SessionCache.Entry cpu = cache.get("a.tflite", Device.CPU, 4, 1);
+
+        assertNotSame(cpu, cache.get("a.tflite", Device.CPU, 2, 1));
+        assertNotSame(cpu, cache.get("a.tflite", Device.GPU, 4, 1));
+        assertEquals(3, backend.getOpened());
+    }
+
+    @Test
+    public void get_closesLeastRecentlyUsedSessionPastMaxSessions() throws Exception {
+        SessionCache cache = new SessionCache(backend, MemoryProbe.JVM, 2);
+
+        SessionCache.Entry a = cache.get("a.tflite", Device.CPU, 1, 1);
+        SessionCache.Entry b = cache.get("b.tflite", Device.CPU, 1, 1);
+        cache.get("a.tflite", Device.CPU, 1, 1);
+        SessionCache.Entry c = cache.get("c.tflite", Device.CPU, 1, 1);
+
+        assertTrue(isClosed(b));
+        assertFalse(isClosed(a));
+        assertFalse(isClosed(c));
+        assertEquals(1, cache.getStats().evictions);
+
+        assertNotSame(b, cache.get("b.tflite", Device.CPU, 1, 1));
+        assertNotNull(cache.getLastColdStart());
+        assertTrue(isClosed(a));
+        assertEquals(2, cache.getStats().evictions);
+        assertEquals(4, backend.getOpened());
+    }
+
+    @Test
+    public void get_resizesCachedSessionOnBatchChange() throws Exception {
+        SessionCache cache = new SessionCache(backend, MemoryProbe.JVM);
+
+        SessionCache.Entry entry = cache.get("a.tflite", Device.CPU, 1, 1);
+        assertSame(entry, cache.get("a.tflite", Device.CPU, 1, 8));
+        assertEquals(8, entry.session.getInput().getShape()[0]);
+        assertSame(entry, cache.get("a.tflite", Device.CPU, 1, 8));
+
+        assertEquals(1, cache.getStats().resizes);
+        assertEquals(1, backend.getOpened());
+        assertNull(cache.getLastColdStart());
+    }
+
+    @Test
+    public void evictAll_closesCachedSessions() throws Exception {
+        SessionCache cache = new SessionCache(backend, MemoryProbe.JVM);
+
+        SessionCache.Entry a = cache.get("a.tflite", Device.CPU, 1, 1);
+        SessionCache.Entry b = cache.get("b.tflite", Device.CPU, 1, 1);
+        cache.evictAll();
+
+        assertTrue(isClosed(a));
+        assertTrue(isClosed(b));
+        assertEquals(2, cache.getStats().evictions);
+        assertNotSame(a, cache.get("a.tflite", Device.CPU, 1, 1));
+    }
+
+    @Test
+    public void open_closesSessionWhenResizeFails() throws Exception {
+        final boolean[] closed = new boolean[1];
+        InferenceBackend failingResize = new InferenceBackend() {
+            @Override
+            public InferenceSession open(String model, Device device, int numThreads, ColdStart coldStart) {
+                return new InferenceSession() {
+                    @Override
+                    public TensorInfo getInput() {
+                        return new TensorInfo(new int[]{1, 2, 2, 3}, TensorType.UINT8);
+                    }
+
+                    @Override
+                    public TensorInfo getOutput() {
+                        return new TensorInfo(new int[]{1, 4}, TensorType.UINT8);
+                    }
+
+                    @Override
+                    public void resize(int batchSize) {
+                        throw new IllegalArgumentException("batch not supported");
+                    }
+
+                    @Override
+                    public void run(ByteBuffer input, ByteBuffer output) {
+                    }
+
+                    @Override
+                    public void close() {
+                        closed[0] = true;
+                    }
+                };
+            }
+
+            @Override
+            public void clear() {
+            }
+        };
+        SessionCache cache = new SessionCache(failingResize, MemoryProbe.JVM);
+
+        try {
+            cache.open("a.tflite", Device.CPU, 1, 32);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(closed[0]);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.tfliteandroidapp.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class StageTracerTest {
+
+    private static JsonObject export(StageTracer tracer) throws Exception {
+        StringWriter writer = new StringWriter();
+        tracer.writeChromeTrace(writer);
+        return JsonParser.parseString(writer.toString()).getAsJsonObject();
+    }
+
+    @Test
+    public void record_overwritesOldestEventsWhenFull() throws Exception {
+        StageTracer tracer = new StageTracer(3, 1);
+
+        for (int i = 0; i < 10; i++)
+            tracer.record(StageTracer.Stage.INFERENCE, 1000L * i, 1000L * i + 500, i);
+
+        assertEquals(4, tracer.size());
+        assertEquals(6, tracer.getDropped());
+        JsonArray events = export(tracer).getAsJsonArray("traceEvents");
+        JsonObject first = events.get(0).getAsJsonObject();
+        assertEquals(6, first.getAsJsonObject("args").get("arg").getAsInt());
+        assertEquals(0.0, first.get("ts").getAsDouble(), 0.0);
+        assertEquals(0.5, first.get("dur").getAsDouble(), 1e-9);
+        assertEquals(3.0, events.get(3).getAsJsonObject().get("ts").getAsDouble(), 1e-9);
+    }
+
+    @Test
+    public void sampled_tracesEveryNthBatch() {
+        StageTracer tracer = new StageTracer(16, 4);
+
+        assertTrue(tracer.sampled(0));
+        assertFalse(tracer.sampled(3));
+        assertTrue(tracer.sampled(8));
+        assertFalse(StageTracer.DISABLED.sampled(0));
+    }
+
+    @Test
+    public void writeChromeTrace_namesJobsAndThreads() throws Exception {
+        StageTracer tracer = new StageTracer(16, 1);
+        int job = tracer.beginJob("model \"a\"");
+
+        tracer.record(StageTracer.Stage.MODEL_LOAD, 100, 200, -1);
+        tracer.record(StageTracer.Stage.JOB, 0, 1000, job);
+        JsonArray events = export(tracer).getAsJsonArray("traceEvents");
+
+        assertEquals(3, events.size());
+        assertEquals("MODEL_LOAD", events.get(0).getAsJsonObject().get("name").getAsString());
+        assertEquals("model \"a\"", events.get(1).getAsJsonObject().get("name").getAsString());
+        JsonObject thread = events.get(2).getAsJsonObject();
+        assertEquals("M", thread.get("ph").getAsString());
+        assertEquals(Thread.currentThread().getName(), thread.getAsJsonObject("args").get("name").getAsString());
+    }
+
+    @Test
+    public void disabledTracer_recordsNothing() throws Exception {
+        StageTracer.DISABLED.record(StageTracer.Stage.JOB, 0, 1, 0);
+
+        assertEquals(-1, StageTracer.DISABLED.beginJob("job"));
+        assertEquals(0, StageTracer.DISABLED.size());
+        assertEquals(0, export(StageTracer.DISABLED).getAsJsonArray("traceEvents").size());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class StreamingRunnerTest {
+
+    private static final long MS = 1000000L;
+
+    /**
+     * Clock which moves only when the runner sleeps or a frame is processed
+     */
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void sleepUntil(long deadlineNanos) {
+            now = Math.max(now, deadlineNanos);
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+
+    private final ByteBuffer input = ByteBuffer.allocate(16);
+
+    private StreamingRunner.Result run(double fps, int depth, long durationMs, long windowMs,
+                                       StreamingRunner.Inference inference) throws Exception {
+        return new StreamingRunner(clock).run(StreamingRunner.syntheticFrames(TensorType.UINT8), input, inference,
+                fps, depth, durationMs * MS, windowMs * MS);
+    }
+
+    @Test
+    public void run_fastInferenceProcessesEveryFrame() throws Exception {
+        StreamingRunner.Result result = run(100, 1, 1000, 250, (frame, buffer) -> clock.now += 5 * MS);
+
+        assertEquals(100, result.framesArrived);
+        assertEquals(100, result.framesProcessed);
+        assertEquals(0, result.framesDropped);
+        assertEquals(5 * MS, result.latency.p50, 0.05 * 5 * MS);
+        assertEquals(100, result.sustainedFps, 1);
+        assertEquals(4, result.windows.size());
+        assertEquals(25, result.windows.get(3).processed);
+        assertEquals(0, result.p50Drift, 1e-9);
+    }
+
+    @Test
+    public void run_slowInferenceTakesLatestFrame() throws Exception {
+        StreamingRunner.Result result = run(100, 1, 1000, 1000, (frame, buffer) -> clock.now += 25 * MS);
+
+        assertEquals(100, result.framesArrived);
+        assertEquals(result.framesArrived, result.framesProcessed + result.framesDropped);
+        assertEquals(40, result.framesProcessed, 1);
+        assertEquals(0.6, result.droppedRatio, 0.02);
+        // newest frame waits at most one period for the previous inference to finish
+        assertTrue(result.latency.max <= 36 * MS);
+        assertTrue(result.latency.min >= 25 * MS);
+    }
+
+    @Test
+    public void run_deeperQueueKeepsOlderFramesLonger() throws Exception {
+        StreamingRunner.Result latest = run(100, 1, 1000, 1000, (frame, buffer) -> clock.now += 25 * MS);
+        clock.now = 0;
+        StreamingRunner.Result queued = run(100, 4, 1000, 1000, (frame, buffer) -> clock.now += 25 * MS);
+
+        // waiting frames are processed after the last frame arrived
+        assertTrue(queued.framesProcessed >= latest.framesProcessed);
+        assertTrue(queued.framesProcessed <= latest.framesProcessed + 4);
+        assertTrue(queued.latency.p50 > 2 * latest.latency.p50);
+    }
+
+    @Test
+    public void run_reportsLatencyDrift() throws Exception {
+        StreamingRunner.Result result = run(50, 1, 4000, 1000,
+                (frame, buffer) -> clock.now += 5 * MS + frame * MS / 20);
+
+        assertEquals(4, result.windows.size());
+        assertEquals(0, result.framesDropped);
+        assertTrue(result.p50Drift > 1);
+        // 2.5ms more every second of the stream
+        assertEquals(150, result.p50DriftMsPerMinute, 5);
+    }
+
+    @Test
+    public void syntheticFrames_differBetweenFrames() {
+        ByteBuffer first = ByteBuffer.allocate(12), second = ByteBuffer.allocate(12);
+        StreamingRunner.FrameSource source = StreamingRunner.syntheticFrames(TensorType.FLOAT32);
+
+        source.fill(0, first);
+        source.fill(1, second);
+        assertNotEquals(first, second);
+        for (int i = 0; i < 3; i++)
+            assertTrue(Math.abs(first.getFloat(i * 4)) <= 1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.tfliteandroidapp.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TopKPostProcessorTest {
+
+    @Test
+    public void floatOutput_returnsSortedBestOfEverySample() {
+        int numClasses = 1001, batchSize = 4;
+        float[] values = new float[numClasses * batchSize];
+        ByteBuffer output = ByteBuffer.allocateDirect(values.length * 4).order(ByteOrder.nativeOrder());
+        Random random = new Random(3);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+            output.putFloat(values[i]);
+        }
+        output.rewind();
+
+        TopKPostProcessor topK = new TopKPostProcessor(5, numClasses, batchSize);
+        topK.processFloat(output, batchSize);
+
+        assertEquals(0, output.position());
+        for (int sample = 0; sample < batchSize; sample++) {
+            float[] sorted = Arrays.copyOfRange(values, sample * numClasses, (sample + 1) * numClasses);
+            Arrays.sort(sorted);
+            for (int rank = 0; rank < 5; rank++) {
+                float expected = sorted[numClasses - 1 - rank];
+                assertEquals(expected, topK.getScore(sample, rank), 0.0f);
+                assertEquals(expected, values[sample * numClasses + topK.getIndex(sample, rank)], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void quantizedOutput_dequantizesWinners() {
+        ByteBuffer output = ByteBuffer.wrap(new byte[]{10, (byte) 255, 0, (byte) 200, 10});
+
+        TopKPostProcessor topK = new TopKPostProcessor(3, 5, 1);
+        topK.processQuantized(output, 1, 1.0f / 255, 0);
+
+        assertEquals(1, topK.getIndex(0, 0));
+        assertEquals(1.0f, topK.getScore(0, 0), 1e-6f);
+        assertEquals(3, topK.getIndex(0, 1));
+        assertEquals(0, topK.getIndex(0, 2));
+        assertEquals(10 / 255.0f, topK.getScore(0, 2), 1e-6f);
+    }
+}
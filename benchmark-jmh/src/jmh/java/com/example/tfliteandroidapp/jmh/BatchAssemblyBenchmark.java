@@ -0,0 +1,85 @@
+package com.example.tfliteandroidapp.jmh;
+
+import com.example.tfliteandroidapp.core.DatasetCache;
+import com.example.tfliteandroidapp.core.ImagePreprocessor;
+import com.example.tfliteandroidapp.core.ImageSource;
+import com.example.tfliteandroidapp.core.SyntheticImageSource;
+import com.example.tfliteandroidapp.core.TensorType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembly of a batch in the direct input buffer, from cached tensors and from decoded images
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchAssemblyBenchmark {
+
+    private static final int NUM_IMAGES = 32;
+
+    @Param({"224", "192", "160", "128"})
+    public int inputSize;
+
+    @Param({"FLOAT32", "UINT8"})
+    public TensorType type;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int batchSize;
+
+    private DatasetCache.Samples samples;
+
+    private List<ImageSource.Image> images;
+
+    private ImagePreprocessor preprocessor;
+
+    private ByteBuffer input;
+
+    @Setup
+    public void setUp() {
+        DatasetCache cache = new DatasetCache(new SyntheticImageSource(NUM_IMAGES, 640, 480, 1),
+                NUM_IMAGES, 1, Long.MAX_VALUE);
+        float mean = type == TensorType.UINT8 ? 0.0f : 127.5f;
+        float std = type == TensorType.UINT8 ? 1.0f : 127.5f;
+
+        samples = cache.getTensors(new DatasetCache.Key(inputSize, inputSize, type, mean, std));
+        images = cache.getImages();
+        preprocessor = new ImagePreprocessor(640, 480, inputSize, inputSize,
+                type == TensorType.UINT8 ? ImagePreprocessor.OutputType.UINT8 : ImagePreprocessor.OutputType.FLOAT32,
+                mean, std, ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+        input = ByteBuffer.allocateDirect(samples.sampleSize * batchSize).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies preprocessed samples of the batch from the data set cache
+     */
+    @Benchmark
+    public ByteBuffer copyCached() {
+        samples.copyBatch(0, batchSize, input);
+        return input;
+    }
+
+    /**
+     * Preprocesses every image of the batch into the input buffer
+     */
+    @Benchmark
+    public ByteBuffer preprocessBatch() {
+        input.clear();
+        for (int i = 0; i < batchSize; i++)
+            preprocessor.process(images.get(i).pixels, input);
+        input.rewind();
+        return input;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.tfliteandroidapp.jmh;
+
+import com.example.tfliteandroidapp.core.BatchPreprocessor;
+import com.example.tfliteandroidapp.core.ImagePreprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preprocessing of a batch of 640x480 images into one input buffer by 1 to 4 workers,
+ * workers = 1 is the single-threaded path the other counts are compared with
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchPreprocessBenchmark {
+
+    private static final int SOURCE_WIDTH = 640, SOURCE_HEIGHT = 480, INPUT_SIZE = 224;
+
+    @Param({"1", "2", "4"})
+    public int workers;
+
+    @Param({"1", "16", "32"})
+    public int batchSize;
+
+    @Param({"FLOAT32", "UINT8"})
+    public ImagePreprocessor.OutputType type;
+
+    private int[][] pixels;
+
+    private ImagePreprocessor[] preprocessors;
+
+    private BatchPreprocessor batchPreprocessor;
+
+    private ByteBuffer output;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        ImagePreprocessor preprocessor = type == ImagePreprocessor.OutputType.UINT8
+                ? new ImagePreprocessor(SOURCE_WIDTH, SOURCE_HEIGHT, INPUT_SIZE, INPUT_SIZE, type, 0.0f, 1.0f,
+                ImagePreprocessor.Sampling.NEAREST_NEIGHBOR)
+                : new ImagePreprocessor(SOURCE_WIDTH, SOURCE_HEIGHT, INPUT_SIZE, INPUT_SIZE, type, 127.5f, 127.5f,
+                ImagePreprocessor.Sampling.NEAREST_NEIGHBOR);
+
+        pixels = new int[batchSize][SOURCE_WIDTH * SOURCE_HEIGHT];
+        for (int[] image : pixels)
+            for (int i = 0; i < image.length; i++)
+                image[i] = 0xff000000 | random.nextInt(0x1000000);
+        preprocessors = new ImagePreprocessor[batchSize];
+        Arrays.fill(preprocessors, preprocessor);
+        batchPreprocessor = new BatchPreprocessor(workers);
+        output = ByteBuffer.allocateDirect(preprocessor.getOutputSize() * batchSize).order(ByteOrder.nativeOrder());
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchPreprocessor.shutdown();
+    }
+
+    @Benchmark
+    public ByteBuffer process() {
+        batchPreprocessor.process(preprocessors, pixels, output, preprocessors[0].getOutputSize());
+        return output;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.tfliteandroidapp.jmh;
+
+import com.example.tfliteandroidapp.core.ImagePreprocessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crop, resize and normalization of one 640x480 image into an input tensor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreprocessBenchmark {
+
+    private static final int SOURCE_WIDTH = 640, SOURCE_HEIGHT = 480;
+
+    @Param({"224", "192", "160", "128"})
+    public int inputSize;
+
+    @Param({"FLOAT32", "UINT8"})
+    public ImagePreprocessor.OutputType type;
+
+    @Param({"NEAREST_NEIGHBOR", "BILINEAR"})
+    public ImagePreprocessor.Sampling sampling;
+
+    private int[] pixels;
+
+    private float mean, std;
+
+    private ImagePreprocessor preprocessor;
+
+    private ByteBuffer output;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+
+        pixels = new int[SOURCE_WIDTH * SOURCE_HEIGHT];
+        for (int i = 0; i < pixels.length; i++)
+            pixels[i] = 0xff000000 | random.nextInt(0x1000000);
+        mean = type == ImagePreprocessor.OutputType.UINT8 ? 0.0f : 127.5f;
+        std = type == ImagePreprocessor.OutputType.UINT8 ? 1.0f : 127.5f;
+        preprocessor = compile();
+        output = ByteBuffer.allocateDirect(inputSize * inputSize * 3 * (type == ImagePreprocessor.OutputType.UINT8 ? 1 : 4))
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Processes image with a compiled plan, the path of every image of a cached input signature
+     */
+    @Benchmark
+    public ByteBuffer process() {
+        output.clear();
+        preprocessor.process(pixels, output);
+        return output;
+    }
+
+    /**
+     * Compiles plan and processes image, the path of the first image of a new input signature
+     */
+    @Benchmark
+    public ByteBuffer compileAndProcess() {
+        output.clear();
+        compile().process(pixels, output);
+        return output;
+    }
+
+    private ImagePreprocessor compile() {
+        return new ImagePreprocessor(SOURCE_WIDTH, SOURCE_HEIGHT, inputSize, inputSize, type, mean, std, sampling);
+    }
+}
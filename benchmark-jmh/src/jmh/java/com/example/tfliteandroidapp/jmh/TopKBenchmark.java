@@ -0,0 +1,96 @@
+package com.example.tfliteandroidapp.jmh;
+
+import com.example.tfliteandroidapp.core.TensorType;
+import com.example.tfliteandroidapp.core.TopKPostProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-K of batched classification output of 1001 classes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TopKBenchmark {
+
+    private static final int NUM_CLASSES = 1001;
+    private static final int K = 5;
+
+    @Param({"FLOAT32", "UINT8"})
+    public TensorType type;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int batchSize;
+
+    private ByteBuffer output;
+
+    private List<String> labels;
+
+    private TopKPostProcessor topKPostProcessor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+
+        output = ByteBuffer.allocateDirect(NUM_CLASSES * batchSize * type.byteSize()).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < NUM_CLASSES * batchSize; i++) {
+            if (type == TensorType.UINT8)
+                output.put((byte) random.nextInt(256));
+            else
+                output.putFloat(random.nextFloat());
+        }
+        output.rewind();
+
+        labels = new ArrayList<>();
+        for (int i = 0; i < NUM_CLASSES; i++)
+            labels.add("class_" + i);
+        topKPostProcessor = new TopKPostProcessor(K, NUM_CLASSES, batchSize);
+    }
+
+    /**
+     * Heap based top-K on the output buffer
+     */
+    @Benchmark
+    public TopKPostProcessor topK() {
+        if (type == TensorType.UINT8)
+            topKPostProcessor.processQuantized(output, batchSize, 1.0f / 255.0f, 0);
+        else
+            topKPostProcessor.processFloat(output, batchSize);
+        return topKPostProcessor;
+    }
+
+    /**
+     * Label map of dequantized scores and Collections.max of every sample, as TensorLabel did it
+     */
+    @Benchmark
+    public void labelMapMax(Blackhole blackhole) {
+        for (int sample = 0; sample < batchSize; sample++) {
+            Map<String, Float> labeledProbability = new LinkedHashMap<>();
+            for (int c = 0; c < NUM_CLASSES; c++) {
+                int index = sample * NUM_CLASSES + c;
+                float score = type == TensorType.UINT8 ? (output.get(index) & 0xff) / 255.0f
+                        : output.getFloat(index * 4);
+                labeledProbability.put(labels.get(c), score);
+            }
+            blackhole.consume(Collections.max(labeledProbability.entrySet(), Map.Entry.comparingByValue()));
+        }
+    }
+}